@@ -0,0 +1,218 @@
+package controller;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.sqlite.SQLiteConfig;
+
+
+/**
+ * A small pool of connections to the SQLite database - a single connection
+ * which all writes go through & a number of read-only connections, so that
+ * reads on background threads can run alongside a write. A thread keeps the
+ * connection it borrows until it has released it as many times as it was
+ * acquired, so nested operations on one thread share a single connection.
+ * 
+ * @author Alan Sheehan - R00111909
+ */
+class ConnectionPool {
+	
+	private PooledConnection writer;
+	private ReentrantLock writerLock = new ReentrantLock(true);
+	
+	private ArrayBlockingQueue<PooledConnection> readers;
+	private boolean readFromWriter;
+	
+	private ArrayList<PooledConnection> connections = new ArrayList<PooledConnection>();
+	
+	private ThreadLocal<PooledConnection> borrowed = new ThreadLocal<PooledConnection>();
+	
+	// the settings the writer was opened with, as reported by the profile
+	private String settings;
+	
+	
+	/**
+	 * Opens the writer & reader connections described by the given profile.
+	 * 
+	 * @param profile the connections are opened with
+	 * @throws SQLException if a connection can't be opened
+	 */
+	public ConnectionPool(DatabaseProfile profile) throws SQLException {
+		
+		String url = "jdbc:sqlite:" + profile.getDatabaseFile();
+		
+		try {
+			
+			// the writer is opened first, as it sets up the journal mode the readers rely on
+			writer = new PooledConnection(open(url, profile, false), false);
+			connections.add(writer);
+			
+			settings = profile.report(writer.getConnection());
+			
+			// without any readers, reads go through the writer as well
+			readFromWriter = profile.getReaders() == 0;
+			readers = new ArrayBlockingQueue<PooledConnection>(Math.max(1, profile.getReaders()));
+			
+			for (int i = 0 ; i < profile.getReaders() ; i++){
+				PooledConnection reader = new PooledConnection(open(url, profile, true), true);
+				connections.add(reader);
+				readers.add(reader);
+			}
+			
+		} catch (SQLException e){
+			close();
+			throw e;
+		}
+		
+	}
+	
+	
+	/**
+	 * Opens a single connection to the database.
+	 * 
+	 * @param url of the database
+	 * @param profile the connection is opened with
+	 * @param readOnly whether the connection can only be read from
+	 * @return the opened connection
+	 */
+	private Connection open(String url, DatabaseProfile profile, boolean readOnly) throws SQLException {
+		
+		SQLiteConfig config = new SQLiteConfig();
+		config.enforceForeignKeys(true);
+		config.setReadOnly(readOnly);
+		profile.applyTo(config);
+		
+		Connection connection = DriverManager.getConnection(url, config.toProperties());
+		profile.applyTo(connection, readOnly);
+		
+		return connection;
+		
+	}
+	
+	
+	/**
+	 * Borrows a connection for the current thread. If the thread already holds
+	 * a connection, that connection is returned again. Otherwise waits for the
+	 * writer, or any free reader, to become available.
+	 * 
+	 * @param write whether the connection will be written to
+	 * @return the borrowed connection
+	 * @throws SQLException if a write is attempted on a read-only connection
+	 * already held by the thread, or the thread is interrupted while waiting
+	 */
+	public PooledConnection acquire(boolean write) throws SQLException {
+		
+		PooledConnection connection = borrowed.get();
+		
+		if (connection != null){
+			
+			if (write && connection.isReadOnly()){
+				throw new SQLException("Cannot write to the database during a read transaction.");
+			}
+			
+			connection.enter();
+			return connection;
+			
+		}
+		
+		if (write || readFromWriter){
+			writerLock.lock();
+			connection = writer;
+		}
+		else {
+			try {
+				connection = readers.take();
+			} catch (InterruptedException e){
+				Thread.currentThread().interrupt();
+				throw new SQLException("Interrupted while waiting for a database connection.");
+			}
+		}
+		
+		borrowed.set(connection);
+		connection.enter();
+		
+		return connection;
+		
+	}
+	
+	/**
+	 * Releases one use of the current thread's connection, returning it to
+	 * the pool once every use has been released.
+	 */
+	public void release(){
+		
+		PooledConnection connection = borrowed.get();
+		
+		if (connection != null && connection.exit()){
+			
+			borrowed.remove();
+			
+			if (connection == writer){
+				writerLock.unlock();
+			}
+			else {
+				readers.offer(connection);
+			}
+			
+		}
+		
+	}
+	
+	/**
+	 * Returns the connection held by the current thread.
+	 * 
+	 * @return the current thread's connection, null if it holds none
+	 */
+	public PooledConnection current(){
+		return borrowed.get();
+	}
+	
+	
+	/**
+	 * Closes every connection in the pool.
+	 */
+	public void close(){
+		
+		for (PooledConnection connection : connections){
+			connection.close();
+		}
+		
+	}
+	
+	
+	
+	// GETTERS
+	
+	public String getSettings(){
+		return settings;
+	}
+	
+	public int getStatementCacheHits(){
+		
+		int hits = 0;
+		
+		for (PooledConnection connection : connections){
+			hits += connection.getStatements().getHits();
+		}
+		
+		return hits;
+		
+	}
+	
+	public int getStatementCacheMisses(){
+		
+		int misses = 0;
+		
+		for (PooledConnection connection : connections){
+			misses += connection.getStatements().getMisses();
+		}
+		
+		return misses;
+		
+	}
+	
+}
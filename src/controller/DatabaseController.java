@@ -1,22 +1,26 @@
 package controller;
 
-import java.sql.Connection;
-import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
 
 import javax.swing.JOptionPane;
 
 import model.Patient;
 import model.Payment;
 import model.Procedure;
-
-import org.sqlite.SQLiteConfig;
+import model.ProcedureList;
 
 
 /**
@@ -29,22 +33,129 @@ public class DatabaseController {
 	
 	private static DatabaseController instance = new DatabaseController();
 	
-	private SimpleDateFormat formatter = new SimpleDateFormat("yyyy-MM-dd hh:mm:ss");
+	// payment dates, stored as milliseconds since the epoch, in the time zone of the practice
+	private DateCodec dates = new DateCodec(ZoneId.systemDefault());
+	
+	private ConnectionPool pool;
 	
-	private Connection connection;
-	private Statement statement;
+	// the procedures & payments of recently selected patients, bounded by the number of rows held
+	private static final int DETAIL_CACHE_ROWS = 10000;
+	private PatientDetailCache details = new PatientDetailCache(DETAIL_CACHE_ROWS);
 	
-	private static final int QUERY = 0;
-	private static final int UPDATE = 1;
+	// every patient's phone number, read in the background from the first look up of a caller
+	private PhoneIndex phones = new PhoneIndex();
+	private Thread phoneLoader;
+	
+	// every patient's name, read in the background from startup
+	private NameIndex names = new NameIndex();
 	
 	private static final String DATABASE_ERROR = "Database Error";
 	private static final String CRITICAL_ERROR = "Critical Error";
 	private static final String ERROR = "Error";
 	
 	
+	// Patient-related SQL
+	private static final String PATIENTS_WITH_BALANCE = "SELECT Pa.*, B.owed FROM Patients Pa LEFT JOIN PatientBalances B ON B.patientID = Pa.id ";
+	private static final String SELECT_PATIENTS = PATIENTS_WITH_BALANCE + "ORDER BY Pa.id;";
+	private static final String SELECT_PATIENTS_BY_NAME = PATIENTS_WITH_BALANCE + "ORDER BY Pa.name, Pa.id LIMIT ? OFFSET ?;";
+	private static final String SELECT_PATIENT_INDEX =	"SELECT (SELECT COUNT(*) FROM Patients WHERE name < P.name) + " +
+														"(SELECT COUNT(*) FROM Patients WHERE name = P.name AND id < P.id) " +
+														"FROM Patients P WHERE P.id = ?;";
+	private static final String SELECT_NAME_INDEX =	"SELECT (SELECT COUNT(*) FROM Patients WHERE name < P.name) + " +
+													"(SELECT COUNT(*) FROM Patients WHERE name = P.name AND id < P.id) " +
+													"FROM Patients P WHERE P.name LIKE ? ESCAPE '\\' ORDER BY P.name, P.id LIMIT 1;";
+	private static final String COUNT_PATIENTS = "SELECT COUNT(*) FROM Patients;";
+	
+	// the keys patients can be ordered by, in the order of the patient table's columns, each with the id which breaks ties on the same index
+	private static final String[][] PATIENT_ORDERS = {{"Pa.id", "Pa.id"}, {"Pa.name", "Pa.id"}, {"Pa.address", "Pa.id"}, 
+														{"Pa.phone", "Pa.id"}, {"B.owed", "B.patientID"}};
+	private static final String SELECT_PATIENT_PAGE = "SELECT Pa.*, B.owed FROM Patients Pa JOIN PatientBalances B ON B.patientID = Pa.id ";
+	private static final String COUNT_PATIENTS_BEFORE = "SELECT COUNT(*) FROM Patients Pa JOIN PatientBalances B ON B.patientID = Pa.id ";
+	
+	// patients whose name, address or phone match a full-text search, & the weight of a match in each of those columns
+	private static final String MATCHING_PATIENTS = "Pa.id IN (SELECT docid FROM PatientSearch WHERE PatientSearch MATCH ?)";
+	private static final String COUNT_MATCHING_PATIENTS = "SELECT COUNT(*) FROM PatientSearch WHERE PatientSearch MATCH ?;";
+	private static final String SEARCH_PATIENTS = "SELECT docid, matchinfo(PatientSearch, 'pcx') FROM PatientSearch WHERE PatientSearch MATCH ?;";
+	private static final double[] SEARCH_WEIGHTS = {4, 1, 2};
+	
+	// patients who owe money & whose last payment was before the start of the month 6 months ago, which is bound first
+	private static final int OVERDUE_MONTHS = 6;
+	private static final String OVERDUE_PATIENTS =	"FROM PatientBalances B, Patients Pa " +
+													"WHERE Pa.id = B.patientID AND B.owed > 0 " +
+													"AND B.lastPayment < ? ";
+	private static final String SELECT_OVERDUE_PATIENTS = "SELECT Pa.*, B.owed " + OVERDUE_PATIENTS + "ORDER BY B.owed, Pa.id LIMIT ? OFFSET ?;";
+	private static final String COUNT_OVERDUE_PATIENTS = "SELECT COUNT(*) " + OVERDUE_PATIENTS + ";";
+	// the position of an overdue patient is the number of overdue patients ordered before it, with the start of the overdue month bound last as well
+	private static final String COUNT_OVERDUE_BEFORE = "(SELECT COUNT(*) " + OVERDUE_PATIENTS +
+														"AND (B.owed < X.owed OR (B.owed = X.owed AND Pa.id < X.patientID)))";
+	private static final String SELECT_OVERDUE_INDEX =	"SELECT " + COUNT_OVERDUE_BEFORE + " FROM PatientBalances X " +
+														"WHERE X.patientID = ? AND X.owed > 0 AND X.lastPayment < ?;";
+	private static final String SELECT_OVERDUE_NAME_INDEX =	"SELECT " + COUNT_OVERDUE_BEFORE + " FROM PatientBalances X, Patients XP " +
+															"WHERE XP.id = X.patientID AND X.owed > 0 AND X.lastPayment < ? " +
+															"AND XP.name LIKE ? ESCAPE '\\' ORDER BY X.owed, X.patientID LIMIT 1;";
+	private static final String OVERDUE_PAGE = "(SELECT Pa.id " + OVERDUE_PATIENTS + "ORDER BY B.owed, Pa.id LIMIT ? OFFSET ?) O, ";
+	private static final String SELECT_OVERDUE_PATIENT_PROCEDURES =	"SELECT PL.patientID, P.* " +
+																	"FROM " + OVERDUE_PAGE + "ProcedureList PL, Procedures P " +
+																	"WHERE PL.patientID = O.id AND P.id = PL.procedureID " +
+																	"ORDER BY PL.patientID, PL.procedureID;";
+	private static final String SELECT_OVERDUE_PATIENT_PAYMENTS =	"SELECT Py.* " +
+																	"FROM " + OVERDUE_PAGE + "Payments Py " +
+																	"WHERE Py.patientID = O.id " +
+																	"ORDER BY Py.patientID, Py.id;";
+	private static final String SELECT_PATIENT = PATIENTS_WITH_BALANCE + "WHERE Pa.id = ?;";
+	private static final String SELECT_NEWEST_PATIENT = PATIENTS_WITH_BALANCE + "WHERE Pa.id IN (SELECT MAX(id) FROM Patients);";
+	private static final String SELECT_PATIENTS_BY_PHONE = PATIENTS_WITH_BALANCE + "WHERE Pa.phoneTail = ? ORDER BY Pa.id;";
+	private static final String SELECT_PHONE_TAILS = "SELECT id, phoneTail FROM Patients;";
+	private static final String SELECT_PATIENT_NAMES = "SELECT id, name FROM Patients;";
+	private static final String SELECT_BALANCE = "SELECT owed FROM PatientBalances WHERE patientID = ?;";
+	private static final String INSERT_PATIENT = "INSERT INTO Patients (name, address, phone, phoneDigits, phoneTail) VALUES (?, ?, ?, ?, ?);";
+	private static final String UPDATE_PATIENT = "UPDATE Patients SET name = ?, address = ?, phone = ?, phoneDigits = ?, phoneTail = ? WHERE id = ?;";
+	private static final String DELETE_PATIENT = "DELETE FROM Patients WHERE id = ?;";
+	
+	// Procedure-related SQL
+	private static final String SELECT_PROCEDURES = "SELECT * FROM Procedures;";
+	private static final String SELECT_PROCEDURE = "SELECT * FROM Procedures WHERE id = ?;";
+	private static final String INSERT_PROCEDURE = "INSERT INTO Procedures (name, price) VALUES (?, ?);";
+	private static final String UPDATE_PROCEDURE = "UPDATE Procedures SET name = ?, price = ? WHERE id = ?;";
+	private static final String DELETE_PROCEDURE = "DELETE FROM Procedures WHERE id = ?;";
+	
+	// ProcedureList-related SQL
+	private static final String SELECT_ALL_PATIENT_PROCEDURES =	"SELECT PL.patientID, P.* " +
+																"FROM ProcedureList PL, Procedures P " +
+																"WHERE P.id = PL.procedureID " +
+																"ORDER BY PL.patientID;";
+	private static final String SELECT_PATIENT_PROCEDURES =	"SELECT P.* " +
+															"FROM Procedures P, ProcedureList PL " +
+															"WHERE P.id = PL.procedureID AND PL.patientID = ?;";
+	private static final String SELECT_PATIENT_PROCEDURES_BY_NAME =	"SELECT PL.patientID, P.* " +
+																	"FROM (SELECT id, name FROM Patients ORDER BY name, id LIMIT ? OFFSET ?) Pa, " +
+																	"ProcedureList PL, Procedures P " +
+																	"WHERE PL.patientID = Pa.id AND P.id = PL.procedureID " +
+																	"ORDER BY Pa.name, Pa.id;";
+	private static final String INSERT_PATIENT_PROCEDURE = "INSERT INTO ProcedureList (patientID, procedureID) VALUES (?, ?);";
+	private static final String INSERT_PATIENT_PROCEDURE_IF_ABSENT = "INSERT OR IGNORE INTO ProcedureList (patientID, procedureID) VALUES (?, ?);";
+	private static final String UPDATE_PATIENT_PROCEDURE = "UPDATE ProcedureList SET procedureID = ? WHERE patientID = ? AND procedureID = ?;";
+	private static final String DELETE_PATIENT_PROCEDURE = "DELETE FROM ProcedureList WHERE patientID = ? AND procedureID = ?;";
+	
+	// Payment-related SQL
+	private static final String SELECT_ALL_PATIENT_PAYMENTS = "SELECT * FROM Payments ORDER BY patientID, id;";
+	private static final String SELECT_PATIENT_PAYMENTS_BY_NAME =	"SELECT Py.* " +
+																	"FROM (SELECT id, name FROM Patients ORDER BY name, id LIMIT ? OFFSET ?) Pa, " +
+																	"Payments Py " +
+																	"WHERE Py.patientID = Pa.id " +
+																	"ORDER BY Pa.name, Pa.id, Py.id;";
+	private static final String SELECT_PATIENT_PAYMENTS = "SELECT * FROM Payments WHERE patientID = ?;";
+	private static final String SELECT_PAYMENT = "SELECT * FROM Payments WHERE id = ?;";
+	private static final String SELECT_PAYMENTS_BETWEEN = "SELECT * FROM Payments WHERE date >= ? AND date < ? ORDER BY date, id;";
+	private static final String SUM_PAID_BETWEEN = "SELECT IFNULL(SUM(amount), 0) FROM Payments WHERE date >= ? AND date < ? AND paid;";
+	private static final String INSERT_PAYMENT = "INSERT INTO Payments (patientID, amount, date, paid) VALUES (?, ?, ?, ?);";
+	private static final String UPDATE_PAYMENT = "UPDATE Payments SET amount = ?, paid = ? WHERE id = ?;";
+	private static final String DELETE_PAYMENT = "DELETE FROM Payments WHERE id = ?;";
+	
+	
 	/**
-	 * Default constructor which creates the database files & tables if they
-	 * don't already exist. Set to private to enforce the singleton.
+	 * Default constructor which creates the database files & brings the tables
+	 * up to date. Set to private to enforce the singleton.
 	 */
 	private DatabaseController() {
 		
@@ -52,10 +163,7 @@ public class DatabaseController {
 		try {
 			
 			Class.forName("org.sqlite.JDBC");
-			SQLiteConfig config = new SQLiteConfig();
-			config.enforceForeignKeys(true);
-			connection = DriverManager.getConnection("jdbc:sqlite:dentalpractice.db", config.toProperties());
-			connection.setAutoCommit(false);
+			pool = new ConnectionPool(new DatabaseProfile());
 			
 		} catch (SQLException e){
 			JOptionPane.showMessageDialog(null, "Failed to connect to SQLite Database - Stopping application now", 
@@ -67,57 +175,21 @@ public class DatabaseController {
 			System.exit(2);
 		}
 		
-		// creating tables in the database if they don't already exist
-		try {
-			
-			String ddl = "CREATE TABLE Patients"
-					+ "("
-					+ "id INTEGER PRIMARY KEY NOT NULL,"
-					+ "name TEXT NOT NULL,"
-					+ "address TEXT NOT NULL,"
-					+ "phone TEXT NOT NULL"
-					+ ");"
-					+ ""
-					+ ""
-					+ "CREATE TABLE Procedures"
-					+ "("
-					+ "id INTEGER PRIMARY KEY NOT NULL,"
-					+ "name TEXT UNIQUE NOT NULL,"
-					+ "price DOUBLE NOT NULL"
-					+ ");"
-					+ ""
-					+ ""
-					+ "CREATE TABLE Payments"
-					+ "("
-					+ "patientID INTEGER NOT NULL,"
-					+ "id INTEGER PRIMARY KEY NOT NULL,"
-					+ "amount DOUBLE NOT NULL,"
-					+ "date DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,"
-					+ "paid BOOLEAN NOT NULL DEFAULT FALSE,"
-					+ "FOREIGN KEY(patientID) REFERENCES Patients(id) ON DELETE CASCADE ON UPDATE CASCADE"
-					+ ");"
-					+ ""
-					+ ""
-					+ "CREATE TABLE ProcedureList"
-					+ "("
-					+ "patientID INTEGER NOT NULL,"
-					+ "procedureID INTEGER NOT NULL,"
-					+ "PRIMARY KEY(patientID, procedureID),"
-					+ "FOREIGN KEY(patientID) REFERENCES Patients(id) ON DELETE CASCADE ON UPDATE CASCADE,"
-					+ "FOREIGN KEY(procedureID) REFERENCES Procedures(id) ON DELETE CASCADE ON UPDATE CASCADE"
-					+ ");"
-					+ ""
-					+ ""
-					+ "CREATE UNIQUE INDEX UniquePayments ON Payments(patientID, id);";
-			
-			statement = connection.createStatement();
-			statement.executeUpdate(ddl);
-			connection.commit();
-			
-		} catch (SQLException e){
-			// fails if table already exists, which is perfectly fine
+		// creating or upgrading the tables in the database
+		try {
+			
+			new SchemaMigrator().migrate(pool.acquire(true).getConnection());
+			
+		} catch (SQLException e){
+			JOptionPane.showMessageDialog(null, "Failed to upgrade the database schema - Stopping application now.\n" + e.getMessage(),
+					CRITICAL_ERROR, JOptionPane.ERROR_MESSAGE);
+			System.exit(3);
+		} finally {
+			pool.release();
 		}
 		
+		loadNameIndex();
+		
 	}
 	
 	/**
@@ -130,68 +202,412 @@ public class DatabaseController {
 	}
 	
 	
+	/**
+	 * Closes every cached statement & every connection to the database.
+	 */
+	public void close(){
+		pool.close();
+	}
+	
+	
+	
+	/**
+	 * Runs the given work as a single transaction on the writer connection,
+	 * committing every update it makes at once. If any update fails, or the
+	 * work throws an exception, every update it made is rolled back. 
+	 * Transactions started inside the work become part of this one.
+	 * 
+	 * @param work to be run in the transaction
+	 * @return the result of the work, null if the transaction failed
+	 */
+	public <T> T transaction(UnitOfWork<T> work){
+		return run(work, true);
+	}
+	
+	/**
+	 * Runs the given work as a single read-only transaction on a reader 
+	 * connection, so that every query it makes sees the database in the same
+	 * state. Nothing is ever committed - the transaction is always rolled back
+	 * when the work ends.
+	 * 
+	 * @param work to be run in the transaction
+	 * @return the result of the work, null if the transaction failed
+	 */
+	public <T> T readTransaction(UnitOfWork<T> work){
+		return run(work, false);
+	}
 	
 	/**
-	 * Executes the given SQL statement. Returns a result set if the type is 
-	 * set to {@link #QUERY} or null if the type is {@link #UPDATE}.
+	 * Runs the given work in a transaction on a connection borrowed from the 
+	 * pool, or as part of the transaction already held by the current thread.
 	 * 
-	 * @param sql the sql statement
-	 * @param type the type the statement is
-	 * @return a result set if the type is {@link #QUERY}, null otherwise
+	 * @param work to be run
+	 * @param write whether the work writes to the database
+	 * @return the result of the work, null if it failed
 	 */
-	private ResultSet execute (String sql, int type) throws SQLException {
+	private <T> T run(UnitOfWork<T> work, boolean write){
 		
-		ResultSet result = null;
-
-		statement = connection.createStatement();
+		PooledConnection connection;
 		
-		if (type == UPDATE){
-			statement.executeUpdate(sql);
+		try {
+			connection = pool.acquire(write);
+		} catch (SQLException e){
+			JOptionPane.showMessageDialog(null, "Failed to connect to the database:\n" + e.getMessage(), 
+					DATABASE_ERROR, JOptionPane.ERROR_MESSAGE);
+			return null;
 		}
-		else if (type == QUERY){
-			result = statement.executeQuery(sql);
+		
+		try {
+			
+			// already within a transaction - a failure undoes the outer transaction
+			if (connection.isInTransaction()){
+				try {
+					return work.run();
+				} catch (SQLException e){
+					connection.setRollbackOnly(true);
+					return null;
+				}
+			}
+			
+			begin(connection);
+			
+			T result = work.run();
+			
+			if (!write){
+				rollback(connection);
+				return result;
+			}
+			
+			if (connection.isRollbackOnly()){
+				rollback(connection);
+				return null;
+			}
+			
+			commit(connection);
+			
+			return result;
+			
+		} catch (SQLException e){
+			rollback(connection);
+			JOptionPane.showMessageDialog(null, write ? "Failed to complete transaction." : "Failed to read from the database.", 
+					DATABASE_ERROR, JOptionPane.ERROR_MESSAGE);
+			return null;
+		} catch (RuntimeException e){
+			rollback(connection);
+			throw e;
+		} finally {
+			pool.release();
 		}
 		
-		connection.commit();
+	}
+	
+	/**
+	 * Begins a transaction on the given connection.
+	 * 
+	 * @param connection to begin the transaction on
+	 */
+	private void begin(PooledConnection connection) throws SQLException {
 		
-		return result;
+		connection.getConnection().setAutoCommit(false);
+		connection.setInTransaction(true);
+		connection.setRollbackOnly(false);
 		
 	}
 	
+	/**
+	 * Commits the transaction in progress on the given connection & returns
+	 * the connection to auto-commit mode.
+	 * 
+	 * @param connection to commit the transaction on
+	 */
+	private void commit(PooledConnection connection) throws SQLException {
+		
+		connection.getConnection().setAutoCommit(true);
+		connection.setInTransaction(false);
+		
+	}
 	
 	/**
-	 * Reads all of the patients from the database.
+	 * Rolls back the transaction in progress on the given connection & returns
+	 * the connection to auto-commit mode.
 	 * 
-	 * @return the patient list
+	 * @param connection to roll back the transaction on
 	 */
-	public ArrayList<Patient> readPatientList() {
+	private void rollback(PooledConnection connection){
 		
-		ArrayList<Patient> patientList = new ArrayList<Patient>();
+		if (!connection.isInTransaction()){
+			return;
+		}
+		
+		try {
+			connection.getConnection().rollback();
+			connection.getConnection().setAutoCommit(true);
+		} catch (SQLException e){
+			JOptionPane.showMessageDialog(null, "Failed to roll back transaction.", 
+					CRITICAL_ERROR, JOptionPane.ERROR_MESSAGE);
+		}
+		
+		connection.setInTransaction(false);
+		connection.setRollbackOnly(false);
+		
+	}
+	
+	
+	
+	/**
+	 * Binds the given parameters, in order, to the given statement.
+	 * 
+	 * @param statement the parameters are bound to
+	 * @param parameters the values to be bound
+	 */
+	private void bind (PreparedStatement statement, Object... parameters) throws SQLException {
+		
+		for (int i = 0 ; i < parameters.length ; i++){
+			
+			Object parameter = parameters[i];
+			int index = i + 1;
+			
+			if (parameter instanceof Integer){
+				statement.setInt(index, (Integer) parameter);
+			}
+			else if (parameter instanceof Long){
+				statement.setLong(index, (Long) parameter);
+			}
+			else if (parameter instanceof Double){
+				statement.setDouble(index, (Double) parameter);
+			}
+			else if (parameter instanceof Boolean){
+				// booleans are stored as 0 or 1
+				statement.setInt(index, (Boolean) parameter ? 1:0);
+			}
+			else if (parameter instanceof String){
+				statement.setString(index, (String) parameter);
+			}
+			else {
+				statement.setObject(index, parameter);
+			}
+			
+		}
+		
+	}
+	
+	/**
+	 * Executes the given SQL query with the given parameters bound to it. Queries
+	 * are never committed - outside of a transaction SQLite reads without one.
+	 * The connection the query runs on is held until the result set is passed
+	 * to {@link #release(ResultSet)}.
+	 * 
+	 * @param sql the sql query
+	 * @param parameters the values bound to the query
+	 * @return the result set of the query
+	 */
+	private ResultSet query (String sql, Object... parameters) throws SQLException {
 		
-		String sql = "SELECT * FROM Patients;";
+		StatementCache statements = pool.acquire(false).getStatements();
 		
 		try {
 			
-			ResultSet result = execute(sql, QUERY);
+			PreparedStatement statement = statements.prepare(sql);
 			
-			while (result.next()){
-				
-				int id = result.getInt("id");
-				String name = result.getString("name");
-				String address = result.getString("address");
-				String phone = result.getString("phone");
-				
-				Patient patient = new Patient(id, name, address, phone);
-				patient.setPatientProcedureList(readPatientProcedureList(id));
-				patient.setPatientPaymentList(readPatientPaymentList(id));
-				
-				patientList.add(patient);
-				
+			try {
+				bind(statement, parameters);
+				return statement.executeQuery();
+			} catch (SQLException e){
+				statements.discard(sql);
+				throw e;
 			}
 			
-		} catch (Exception e){
-			JOptionPane.showMessageDialog(null, "Failed to read patient list.", 
-					DATABASE_ERROR, JOptionPane.ERROR_MESSAGE);
+		} catch (SQLException e){
+			pool.release();
+			throw e;
+		}
+		
+	}
+	
+	/**
+	 * Closes the given result set & releases the connection it was read from.
+	 * 
+	 * @param result of a call to {@link #query(String, Object...)}
+	 */
+	private void release (ResultSet result){
+		
+		try {
+			result.close();
+		} catch (SQLException e){
+			// result set is being discarded either way
+		} finally {
+			pool.release();
+		}
+		
+	}
+	
+	/**
+	 * Executes the given SQL update on the writer connection with the given 
+	 * parameters bound to it. The update is committed straight away unless
+	 * it's part of a transaction.
+	 * 
+	 * @param sql the sql update
+	 * @param parameters the values bound to the update
+	 * @return the number of rows changed
+	 */
+	private int update (String sql, Object... parameters) throws SQLException {
+		
+		PooledConnection connection = pool.acquire(true);
+		StatementCache statements = connection.getStatements();
+		
+		try {
+			
+			PreparedStatement statement = statements.prepare(sql);
+			
+			bind(statement, parameters);
+			return statement.executeUpdate();
+			
+		} catch (SQLException e){
+			
+			statements.discard(sql);
+			
+			// a failed write undoes the rest of the transaction it belongs to
+			if (connection.isInTransaction()){
+				connection.setRollbackOnly(true);
+			}
+			
+			throw e;
+			
+		} finally {
+			pool.release();
+		}
+		
+	}
+	
+	
+	/**
+	 * Executes the given SQL insert on the writer connection, as 
+	 * {@link #update(String, Object...)} does, & returns the key SQLite
+	 * generated for the new row.
+	 * 
+	 * @param sql the sql insert
+	 * @param parameters the values bound to the insert
+	 * @return the id of the inserted row
+	 */
+	private int insert (String sql, Object... parameters) throws SQLException {
+		
+		PooledConnection connection = pool.acquire(true);
+		StatementCache statements = connection.getStatements();
+		
+		try {
+			
+			PreparedStatement statement = statements.prepare(sql);
+			
+			bind(statement, parameters);
+			statement.executeUpdate();
+			
+			ResultSet keys = statement.getGeneratedKeys();
+			
+			try {
+				keys.next();
+				return keys.getInt(1);
+			} finally {
+				keys.close();
+			}
+			
+		} catch (SQLException e){
+			
+			statements.discard(sql);
+			
+			// a failed write undoes the rest of the transaction it belongs to
+			if (connection.isInTransaction()){
+				connection.setRollbackOnly(true);
+			}
+			
+			throw e;
+			
+		} finally {
+			pool.release();
+		}
+		
+	}
+	
+	
+	/**
+	 * Executes the given SQL update once for each row of parameters, as a 
+	 * single JDBC batch on the writer connection. Should be called within a
+	 * transaction so that the whole batch is committed at once.
+	 * 
+	 * @param sql the sql update
+	 * @param rows the values bound to the update, one array per execution
+	 * @return the number of rows changed by each execution
+	 */
+	private int[] batch (String sql, List<Object[]> rows) throws SQLException {
+		
+		PooledConnection connection = pool.acquire(true);
+		StatementCache statements = connection.getStatements();
+		
+		try {
+			
+			PreparedStatement statement = statements.prepare(sql);
+			
+			for (Object[] parameters : rows){
+				bind(statement, parameters);
+				statement.addBatch();
+			}
+			
+			return statement.executeBatch();
+			
+		} catch (SQLException e){
+			
+			statements.discard(sql);
+			
+			// a failed write undoes the rest of the transaction it belongs to
+			if (connection.isInTransaction()){
+				connection.setRollbackOnly(true);
+			}
+			
+			throw e;
+			
+		} finally {
+			pool.release();
+		}
+		
+	}
+	
+	/**
+	 * Converts the update counts of a batch into whether each row was changed.
+	 * 
+	 * @param counts returned by {@link #batch(String, List)}, null if the batch failed
+	 * @param size of the batch
+	 * @return true for each row which was changed, false otherwise
+	 */
+	private boolean[] toResults (int[] counts, int size){
+		
+		boolean[] results = new boolean[size];
+		
+		for (int i = 0 ; counts != null && i < size ; i++){
+			results[i] = counts[i] > 0;
+		}
+		
+		return results;
+		
+	}
+	
+	
+	/**
+	 * Reads all of the patients from the database, along with each patient's
+	 * procedures & payments. The patients, procedures & payments are each read
+	 * in a single scan and stitched together in memory, so the number of 
+	 * queries doesn't grow with the number of patients.
+	 * 
+	 * @return the patient list
+	 */
+	public ArrayList<Patient> readPatientList() {
+		
+		ArrayList<Patient> patientList = readTransaction(new UnitOfWork<ArrayList<Patient>>() {
+			@Override
+			public ArrayList<Patient> run() throws SQLException {
+				return readPatients();
+			}
+		});
+		
+		if (patientList == null){
 			return new ArrayList<Patient>();
 		}
 		
@@ -199,173 +615,1113 @@ public class DatabaseController {
 		
 	}
 	
-	
 	/**
-	 * Reads all of the procedures a given patient has.
+	 * Reads all of the patients, procedures & payments. Called within a read
+	 * transaction so that the three scans are consistent with each other.
 	 * 
-	 * @param patientID of the patient who's procedures will be retrieved
-	 * @return the procedure list of the patient
+	 * @return the patient list
 	 */
-	public ArrayList<Procedure> readPatientProcedureList(int patientID) {
+	private ArrayList<Patient> readPatients() throws SQLException {
 		
-		ArrayList<Procedure> procedureList = new ArrayList<Procedure>();
+		ArrayList<Patient> patientList = new ArrayList<Patient>();
+		HashMap<Integer, Patient> patients = new HashMap<Integer, Patient>();
+		
+		// reading the patients
+		ResultSet result = query(SELECT_PATIENTS);
+		
+		try {
+			
+			while (result.next()){
+				
+				Patient patient = toPatient(result);
+				
+				patientList.add(patient);
+				patients.put(patient.getPatientNo(), patient);
+				
+			}
+			
+		} finally {
+			release(result);
+		}
 		
-		String sql = 	"SELECT P.* " + 
-						"FROM Procedures P, ProcedureList PL " +
-						"WHERE P.id = PL.procedureID AND PL.patientID = %s;";
 		
-		sql = String.format(sql, patientID);
+		// attaching each procedure to the patient it's scheduled for
+		result = query(SELECT_ALL_PATIENT_PROCEDURES);
 		
 		try {
 			
-			ResultSet result = execute(sql, QUERY);
+			while (result.next()){
+				
+				Patient patient = patients.get(result.getInt("patientID"));
+				
+				if (patient != null){
+					patient.addProcedure(toProcedure(result));
+				}
+				
+			}
+			
+		} finally {
+			release(result);
+		}
+		
+		
+		// attaching each payment to the patient who made it
+		result = query(SELECT_ALL_PATIENT_PAYMENTS);
+		
+		try {
 			
 			while (result.next()){
 				
-				int id = result.getInt("id");
-				String name = result.getString("name");
-				double price = result.getDouble("price");
+				Patient patient = patients.get(result.getInt("patientID"));
 				
-				procedureList.add(new Procedure(id, name, price));
+				if (patient != null){
+					patient.addPayment(toPayment(result));
+				}
 				
 			}
 			
-		} catch (SQLException e){
-			JOptionPane.showMessageDialog(null, "Failed to read patient's procedure list.", 
-					DATABASE_ERROR, JOptionPane.ERROR_MESSAGE);
-			return new ArrayList<Procedure>();
+		} finally {
+			release(result);
 		}
 		
-		return procedureList;
+		return patientList;
+		
 	}
 	
 	
 	/**
-	 * Reads all of the payments a given patient has.
+	 * Reads a range of patients, along with their procedures & payments, in 
+	 * order of name & passes each one to the given handler as soon as it's
+	 * read. Only one patient is held in memory at a time - the patients, 
+	 * procedures & payments are read from three cursors in the same order &
+	 * merged as they are walked.
 	 * 
-	 * @param patientID of the patient who's payments will be retrieved
-	 * @return the payment list of the patient
+	 * @param handler each patient is passed to
+	 * @param first the position of the first patient in the range, counting from 0
+	 * @param count the greatest number of patients in the range, -1 for every patient after the first
+	 * @return true if every patient in the range was handled, false if the 
+	 * handler stopped early or the patients couldn't be read
 	 */
-	public ArrayList<Payment> readPatientPaymentList(int patientID) {
+	public boolean streamPatients(final PatientHandler handler, final int first, final int count) {
 		
-		ArrayList<Payment> paymentList = new ArrayList<Payment>();
+		Boolean completed = readTransaction(new UnitOfWork<Boolean>() {
+			@Override
+			public Boolean run() throws SQLException {
+				return streamPatientsByName(handler, first, count);
+			}
+		});
 		
-		String sql = 	"SELECT * " + 
-						"FROM Payments " +
-						"WHERE patientID = %s;";
+		return completed != null && completed;
 		
-		sql = String.format(sql, patientID);
+	}
+	
+	/**
+	 * Walks the patient, procedure & payment cursors together. Called within a
+	 * read transaction so that the three cursors are consistent with each other.
+	 * 
+	 * @param handler each patient is passed to
+	 * @param first the position of the first patient in the range
+	 * @param count the greatest number of patients in the range
+	 * @return true if every patient was handled, false otherwise
+	 */
+	private boolean streamPatientsByName(PatientHandler handler, int first, int count) throws SQLException {
+		
+		ResultSet patients = query(SELECT_PATIENTS_BY_NAME, count, first);
 		
 		try {
 			
-			ResultSet result = execute(sql, QUERY);
+			ResultSet procedures = query(SELECT_PATIENT_PROCEDURES_BY_NAME, count, first);
 			
-			while (result.next()){
+			try {
 				
-				int id = result.getInt("id");
-				double amount = result.getDouble("amount");
-				Date date = formatter.parse(result.getString("date"));
-				boolean status = result.getBoolean("paid");
+				ResultSet payments = query(SELECT_PATIENT_PAYMENTS_BY_NAME, count, first);
 				
-				paymentList.add(new Payment(id, amount, status, date));
+				try {
+					
+					boolean moreProcedures = procedures.next();
+					boolean morePayments = payments.next();
+					
+					while (patients.next()){
+						
+						Patient patient = toPatient(patients);
+						int id = patient.getPatientNo();
+						
+						// the procedures & payments of each patient directly follow those of the patient before
+						while (moreProcedures && procedures.getInt("patientID") == id){
+							patient.addProcedure(toProcedure(procedures));
+							moreProcedures = procedures.next();
+						}
+						
+						while (morePayments && payments.getInt("patientID") == id){
+							patient.addPayment(toPayment(payments));
+							morePayments = payments.next();
+						}
+						
+						if (!handler.handle(patient)){
+							return false;
+						}
+						
+					}
+					
+				} finally {
+					release(payments);
+				}
+				
+			} finally {
+				release(procedures);
+			}
+			
+		} finally {
+			release(patients);
+		}
+		
+		return true;
+		
+	}
+	
+	/**
+	 * Finds the position of the given patient when every patient is ordered by
+	 * name, as they are by {@link #streamPatients(PatientHandler, int, int)}.
+	 * 
+	 * @param patientID of the patient
+	 * @return the position of the patient, counting from 0, -1 if no such patient exists
+	 */
+	public int indexOfPatient(int patientID) {
+		return readIndex(SELECT_PATIENT_INDEX, patientID);
+	}
+	
+	/**
+	 * Finds the position of the first patient whose name starts with the
+	 * given text, ignoring case, when every patient is ordered by name.
+	 * 
+	 * @param name the start of the patient's name
+	 * @return the position of the patient, counting from 0, -1 if no name matches
+	 */
+	public int indexOfPatient(String name) {
+		return readIndex(SELECT_NAME_INDEX, startsWith(name));
+	}
+	
+	/**
+	 * Builds a LIKE pattern, escaped with '\', matching text which starts with
+	 * the given text.
+	 * 
+	 * @param text the start of the text matched
+	 * @return the pattern
+	 */
+	private static String startsWith(String text) {
+		return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+	}
+	
+	/**
+	 * Reads the position returned by one of the patient index queries.
+	 * 
+	 * @param sql the index query
+	 * @param parameters identifying the patient
+	 * @return the position read, -1 if the query returned nothing
+	 */
+	private int readIndex(String sql, Object... parameters) {
+		
+		try {
+			
+			ResultSet result = query(sql, parameters);
+			
+			try {
+				return result.next() ? result.getInt(1) : -1;
+			} finally {
+				release(result);
+			}
+			
+		} catch (SQLException e){
+			JOptionPane.showMessageDialog(null, "Failed to find patient.",
+					DATABASE_ERROR, JOptionPane.ERROR_MESSAGE);
+			return -1;
+		}
+		
+	}
+	
+	/**
+	 * Reads the patients which follow the given patient when every patient is
+	 * ordered by the given column of the patient table. The patients are read
+	 * by seeking to the given patient on the column's index, so reading a
+	 * page doesn't get slower the further it is into the order.
+	 * 
+	 * @param column of the patient table the patients are ordered by
+	 * @param ascending whether the patients are in ascending order
+	 * @param search the text the patients must match, see {@link #searchPatients(String, int)}, null for every patient
+	 * @param after the patient the patients read follow
+	 * @param count the greatest number of patients read
+	 * @return the patients, an empty list if they couldn't be read
+	 */
+	public ArrayList<Patient> readPatientPage(int column, boolean ascending, String search, Patient after, int count) {
+		
+		String match = toMatch(search);
+		String sql = SELECT_PATIENT_PAGE + wherePatients(match, patientsAfter(column, ascending ? ">" : "<")) 
+				+ orderPatients(column, ascending) + "LIMIT ?;";
+		
+		ArrayList<Object> parameters = new ArrayList<Object>();
+		
+		if (match != null){
+			parameters.add(match);
+		}
+		
+		Collections.addAll(parameters, patientKey(after, column));
+		parameters.add(count);
+		
+		return readPatientPage(sql, parameters.toArray());
+		
+	}
+	
+	/**
+	 * Reads a range of the patients when every patient is ordered by the 
+	 * given column of the patient table. The patients before the range are
+	 * counted to find it, so {@link #readPatientPage(int, boolean, String, Patient, int)}
+	 * is used instead wherever the patient before the range is known.
+	 * 
+	 * @param column of the patient table the patients are ordered by
+	 * @param ascending whether the patients are in ascending order
+	 * @param search the text the patients must match, see {@link #searchPatients(String, int)}, null for every patient
+	 * @param first the position of the first patient in the range, counting from 0
+	 * @param count the greatest number of patients read
+	 * @return the patients, an empty list if they couldn't be read
+	 */
+	public ArrayList<Patient> readPatientPage(int column, boolean ascending, String search, int first, int count) {
+		
+		String match = toMatch(search);
+		String sql = SELECT_PATIENT_PAGE + wherePatients(match, null) + orderPatients(column, ascending) + "LIMIT ? OFFSET ?;";
+		
+		if (match != null){
+			return readPatientPage(sql, match, count, first);
+		}
+		
+		return readPatientPage(sql, count, first);
+		
+	}
+	
+	/**
+	 * Reads the patients returned by one of the patient page queries.
+	 * 
+	 * @param sql the page query
+	 * @param parameters the values bound to the query
+	 * @return the patients, an empty list if they couldn't be read
+	 */
+	private ArrayList<Patient> readPatientPage(String sql, Object... parameters) {
+		
+		ArrayList<Patient> patients = new ArrayList<Patient>();
+		
+		try {
+			
+			ResultSet result = query(sql, parameters);
+			
+			try {
+				while (result.next()){
+					patients.add(toPatient(result));
+				}
+			} finally {
+				release(result);
+			}
+			
+		} catch (SQLException e){
+			JOptionPane.showMessageDialog(null, "Failed to read patients.",
+					DATABASE_ERROR, JOptionPane.ERROR_MESSAGE);
+		}
+		
+		return patients;
+		
+	}
+	
+	/**
+	 * Finds the position of the given patient when every patient is ordered by
+	 * the given column of the patient table, by counting the patients before
+	 * it on the column's index.
+	 * 
+	 * @param patient to search for
+	 * @param column of the patient table the patients are ordered by
+	 * @param ascending whether the patients are in ascending order
+	 * @param search the text the patients must match, see {@link #searchPatients(String, int)}, null for every patient
+	 * @return the position of the patient, counting from 0, -1 if it couldn't be found
+	 */
+	public int indexOfPatient(Patient patient, int column, boolean ascending, String search) {
+		
+		String match = toMatch(search);
+		ArrayList<Object> parameters = new ArrayList<Object>();
+		
+		if (match != null){
+			parameters.add(match);
+		}
+		
+		Collections.addAll(parameters, patientKey(patient, column));
+		
+		try {
+			
+			ResultSet result = query(COUNT_PATIENTS_BEFORE + wherePatients(match, patientsAfter(column, ascending ? "<" : ">")) + ";", 
+					parameters.toArray());
+			
+			try {
+				return result.next() ? result.getInt(1) : -1;
+			} finally {
+				release(result);
+			}
+			
+		} catch (SQLException e){
+			JOptionPane.showMessageDialog(null, "Failed to find patient.",
+					DATABASE_ERROR, JOptionPane.ERROR_MESSAGE);
+			return -1;
+		}
+		
+	}
+	
+	/**
+	 * Builds the condition matching the patients on the given side of a
+	 * patient in the order of a column. The column is compared on its own
+	 * first, so that SQLite can seek on the column's index.
+	 * 
+	 * @param column of the patient table the patients are ordered by
+	 * @param operator either "&gt;" for the patients after, or "&lt;" for those before
+	 * @return the condition, bound with {@link #patientKey(Patient, int)}
+	 */
+	private static String patientsAfter(int column, String operator) {
+		
+		String key = PATIENT_ORDERS[column][0];
+		String id = PATIENT_ORDERS[column][1];
+		
+		if (key.equals(id)){
+			return id + " " + operator + " ?";
+		}
+		
+		return key + " " + operator + "= ? AND (" + key + " " + operator + " ? OR " + id + " " + operator + " ?)";
+		
+	}
+	
+	/**
+	 * Builds the where clause of a patient page query, from the given search
+	 * & condition.
+	 * 
+	 * @param match the full-text query the patients must match, bound first, null for every patient
+	 * @param condition the patients must also meet, null for none
+	 * @return the where clause, empty if there's neither a search nor a condition
+	 */
+	private static String wherePatients(String match, String condition) {
+		
+		if (match == null){
+			return condition == null ? "" : "WHERE " + condition + " ";
+		}
+		
+		return "WHERE " + MATCHING_PATIENTS + (condition == null ? " " : " AND " + condition + " ");
+		
+	}
+	
+	/**
+	 * Builds the order by clause for the given column of the patient table.
+	 * 
+	 * @param column of the patient table the patients are ordered by
+	 * @param ascending whether the patients are in ascending order
+	 * @return the order by clause
+	 */
+	private static String orderPatients(int column, boolean ascending) {
+		
+		String direction = ascending ? " ASC" : " DESC";
+		
+		return "ORDER BY " + PATIENT_ORDERS[column][0] + direction + ", " + PATIENT_ORDERS[column][1] + direction + " ";
+		
+	}
+	
+	/**
+	 * Returns the values bound to the condition built by 
+	 * {@link #patientsAfter(int, String)} for the given patient.
+	 * 
+	 * @param patient the condition is relative to
+	 * @param column of the patient table the patients are ordered by
+	 * @return the values to bind
+	 */
+	private static Object[] patientKey(Patient patient, int column) {
+		
+		Object key;
+		
+		switch (column){
+		case 1:
+			key = patient.getPatientName();
+			break;
+		case 2:
+			key = patient.getPatientAddress();
+			break;
+		case 3:
+			key = patient.getPatientPhone();
+			break;
+		case 4:
+			key = patient.getBalance();
+			break;
+		default:
+			return new Object[] {patient.getPatientNo()};
+		}
+		
+		return new Object[] {key, key, patient.getPatientNo()};
+		
+	}
+	
+	
+	/**
+	 * Reads a range of the patients who are overdue - those who owe money &
+	 * haven't made a payment since the start of the month 6 months ago - in
+	 * order of the amount owed. The patients are found through the index on
+	 * their balances, so only the overdue patients are ever read, & the
+	 * procedures & payments of the whole range are read by one query each.
+	 * 
+	 * @param handler each overdue patient is passed to
+	 * @param first the position of the first patient in the range, counting from 0
+	 * @param count the greatest number of patients in the range, -1 for every patient after the first
+	 * @return true if every patient in the range was handled, false if the 
+	 * handler stopped early or the patients couldn't be read
+	 */
+	public boolean streamOverduePatients(final PatientHandler handler, final int first, final int count) {
+		
+		Boolean completed = readTransaction(new UnitOfWork<Boolean>() {
+			@Override
+			public Boolean run() throws SQLException {
+				
+				long overdueBefore = dates.startOfMonth(OVERDUE_MONTHS);
+				ArrayList<Patient> patients = new ArrayList<Patient>();
+				HashMap<Integer, Patient> byID = new HashMap<Integer, Patient>();
+				ResultSet result = query(SELECT_OVERDUE_PATIENTS, overdueBefore, count, first);
+				
+				try {
+					while (result.next()){
+						Patient patient = toPatient(result);
+						patients.add(patient);
+						byID.put(patient.getPatientNo(), patient);
+					}
+				} finally {
+					release(result);
+				}
+				
+				// the details of the range are read together & handed out to its patients, all within the one transaction
+				result = query(SELECT_OVERDUE_PATIENT_PROCEDURES, overdueBefore, count, first);
+				
+				try {
+					while (result.next()){
+						byID.get(result.getInt("patientID")).addProcedure(toProcedure(result));
+					}
+				} finally {
+					release(result);
+				}
+				
+				result = query(SELECT_OVERDUE_PATIENT_PAYMENTS, overdueBefore, count, first);
+				
+				try {
+					while (result.next()){
+						byID.get(result.getInt("patientID")).addPayment(toPayment(result));
+					}
+				} finally {
+					release(result);
+				}
+				
+				for (Patient patient : patients){
+					
+					if (!handler.handle(patient)){
+						return false;
+					}
+					
+				}
+				
+				return true;
+				
+			}
+		});
+		
+		return completed != null && completed;
+		
+	}
+	
+	/**
+	 * Reads the amount a patient owes, as kept up to date by the database
+	 * whenever their procedures or payments change.
+	 * 
+	 * @param patientID of the patient
+	 * @return the amount owed by the patient in cents, 0 if it couldn't be read
+	 */
+	public long readBalance(int patientID) {
+		
+		try {
+			
+			ResultSet result = query(SELECT_BALANCE, patientID);
+			
+			try {
+				return result.next() ? result.getLong(1) : 0;
+			} finally {
+				release(result);
+			}
+			
+		} catch (SQLException e){
+			JOptionPane.showMessageDialog(null, "Failed to read patient's balance.",
+					DATABASE_ERROR, JOptionPane.ERROR_MESSAGE);
+			return 0;
+		}
+		
+	}
+	
+	/**
+	 * Counts the patients in the database.
+	 * 
+	 * @return the number of patients, 0 if they couldn't be counted
+	 */
+	public int countPatients() {
+		return count(COUNT_PATIENTS);
+	}
+	
+	/**
+	 * Counts the patients who match the given search.
+	 * 
+	 * @param search the text the patients must match, see {@link #searchPatients(String, int)}, null for every patient
+	 * @return the number of patients, 0 if they couldn't be counted
+	 */
+	public int countPatients(String search) {
+		
+		String match = toMatch(search);
+		
+		return match == null ? count(COUNT_PATIENTS) : count(COUNT_MATCHING_PATIENTS, match);
+		
+	}
+	
+	/**
+	 * Searches the names, addresses & phone numbers of every patient on the
+	 * full-text index, for the words of the given text. Each word matches any
+	 * word in the patient's details it's the start of. Only the ids of the 
+	 * patients are read, best match first - a match in the name counts for
+	 * more than one in the phone number, which counts for more than one in
+	 * the address, & a match on a rare word for more than one on a common word.
+	 * 
+	 * @param search the text searched for
+	 * @param limit the greatest number of ids returned
+	 * @return the ids of the patients matched, an empty list if none match or the search failed
+	 */
+	public ArrayList<Integer> searchPatients(String search, int limit) {
+		
+		ArrayList<Integer> ids = new ArrayList<Integer>();
+		final HashMap<Integer, Double> scores = new HashMap<Integer, Double>();
+		String match = toMatch(search);
+		
+		if (match == null){
+			return ids;
+		}
+		
+		try {
+			
+			ResultSet result = query(SEARCH_PATIENTS, match);
+			
+			try {
+				while (result.next()){
+					ids.add(result.getInt(1));
+					scores.put(result.getInt(1), score(result.getBytes(2)));
+				}
+			} finally {
+				release(result);
+			}
+			
+		} catch (SQLException e){
+			JOptionPane.showMessageDialog(null, "Failed to search patients.",
+					DATABASE_ERROR, JOptionPane.ERROR_MESSAGE);
+			return new ArrayList<Integer>();
+		}
+		
+		// best match first, ties in order of id
+		Collections.sort(ids, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer first, Integer second) {
+				
+				int order = Double.compare(scores.get(second), scores.get(first));
+				
+				return order != 0 ? order : first.compareTo(second);
+				
+			}
+		});
+		
+		return ids.size() > limit ? new ArrayList<Integer>(ids.subList(0, limit)) : ids;
+		
+	}
+	
+	/**
+	 * Builds the full-text query for the given search, matching every word
+	 * of the search as the start of a word.
+	 * 
+	 * @param search the text searched for, may be null
+	 * @return the query, null if the search has no words
+	 */
+	private static String toMatch(String search) {
+		
+		if (search == null){
+			return null;
+		}
+		
+		StringBuilder match = new StringBuilder();
+		
+		// quoting each word, so that words such as OR aren't read as operators
+		for (String word : search.split("[^\\p{L}\\p{N}]+")){
+			if (!word.isEmpty()){
+				match.append(match.length() == 0 ? "" : " ").append('"').append(word).append("*\"");
+			}
+		}
+		
+		return match.length() == 0 ? null : match.toString();
+		
+	}
+	
+	/**
+	 * Scores a patient matched by a search, from the "pcx" matchinfo of the
+	 * match - the number of phrases & columns, then for each phrase in each
+	 * column the hits in this row, hits in all rows & rows with a hit.
+	 * 
+	 * @param matchinfo read for the patient
+	 * @return the score of the match, higher for a better match
+	 */
+	private static double score(byte[] matchinfo) {
+		
+		IntBuffer values = ByteBuffer.wrap(matchinfo).order(ByteOrder.nativeOrder()).asIntBuffer();
+		int phrases = values.get(0);
+		int columns = values.get(1);
+		double score = 0;
+		
+		for (int phrase = 0 ; phrase < phrases ; phrase++){
+			for (int column = 0 ; column < columns ; column++){
+				
+				int hits = values.get(2 + 3 * (phrase * columns + column));
+				int rows = values.get(2 + 3 * (phrase * columns + column) + 2);
+				
+				if (hits > 0){
+					score += SEARCH_WEIGHTS[column] * hits / rows;
+				}
+				
+			}
+		}
+		
+		return score;
+		
+	}
+	
+	/**
+	 * Counts the patients who are overdue, as read by 
+	 * {@link #streamOverduePatients(PatientHandler, int, int)}.
+	 * 
+	 * @return the number of overdue patients, 0 if they couldn't be counted
+	 */
+	public int countOverduePatients() {
+		return count(COUNT_OVERDUE_PATIENTS, dates.startOfMonth(OVERDUE_MONTHS));
+	}
+	
+	/**
+	 * Finds the position of the given patient among the overdue patients, in
+	 * the order they're read by {@link #streamOverduePatients(PatientHandler, int, int)}.
+	 * The overdue patients ordered before it are counted on the index on
+	 * balances, without reading any of their details.
+	 * 
+	 * @param patientID of the patient
+	 * @return the position of the patient, counting from 0, -1 if the patient isn't overdue
+	 */
+	public int indexOfOverduePatient(int patientID) {
+		
+		long overdueBefore = dates.startOfMonth(OVERDUE_MONTHS);
+		
+		return readIndex(SELECT_OVERDUE_INDEX, overdueBefore, patientID, overdueBefore);
+		
+	}
+	
+	/**
+	 * Finds the position of the first overdue patient whose name starts with
+	 * the given text, ignoring case, in the order the overdue patients are
+	 * read by {@link #streamOverduePatients(PatientHandler, int, int)}.
+	 * 
+	 * @param name the start of the patient's name
+	 * @return the position of the patient, counting from 0, -1 if no overdue patient's name matches
+	 */
+	public int indexOfOverduePatient(String name) {
+		
+		long overdueBefore = dates.startOfMonth(OVERDUE_MONTHS);
+		
+		return readIndex(SELECT_OVERDUE_NAME_INDEX, overdueBefore, overdueBefore, startsWith(name));
+		
+	}
+	
+	/**
+	 * Reads the result of a counting query.
+	 * 
+	 * @param sql the counting query
+	 * @param parameters the values bound to the query
+	 * @return the count, 0 if the query failed
+	 */
+	private int count(String sql, Object... parameters) {
+		
+		try {
+			
+			ResultSet result = query(sql, parameters);
+			
+			try {
+				return result.next() ? result.getInt(1) : 0;
+			} finally {
+				release(result);
+			}
+			
+		} catch (SQLException e){
+			JOptionPane.showMessageDialog(null, "Failed to count patients.",
+					DATABASE_ERROR, JOptionPane.ERROR_MESSAGE);
+			return 0;
+		}
+		
+	}
+	
+	
+	/**
+	 * Reads the procedures & payments of the given patient, from the cache of
+	 * recently read patients if they're held there. Otherwise both lists are
+	 * read in a single read transaction & cached.
+	 * 
+	 * @param patientID of the patient
+	 * @return the patient's details, null if they couldn't be read
+	 */
+	public PatientDetails readPatientDetails(final int patientID) {
+		
+		PatientDetails cached = details.get(patientID);
+		
+		if (cached != null){
+			return cached;
+		}
+		
+		// a write made while the lists are being read leaves the cache at a later version
+		int version = details.getVersion();
+		
+		PatientDetails read = readTransaction(new UnitOfWork<PatientDetails>() {
+			@Override
+			public PatientDetails run() {
+				return new PatientDetails(patientID, readPatientProcedureList(patientID), readPatientPaymentList(patientID));
+			}
+		});
+		
+		if (read != null){
+			details.put(read, version);
+		}
+		
+		return read;
+		
+	}
+	
+	/**
+	 * Returns whether the procedures & payments of the given patient are held
+	 * in the cache, so that {@link #readPatientDetails(int)} won't read the 
+	 * database.
+	 * 
+	 * @param patientID of the patient
+	 * @return true if the patient's details are cached, false otherwise
+	 */
+	public boolean isPatientDetailsCached(int patientID) {
+		return details.contains(patientID);
+	}
+	
+	
+	/**
+	 * Reads all of the procedures a given patient has.
+	 * 
+	 * @param patientID of the patient who's procedures will be retrieved
+	 * @return the procedure list of the patient
+	 */
+	public ArrayList<Procedure> readPatientProcedureList(int patientID) {
+		
+		ArrayList<Procedure> procedureList = new ArrayList<Procedure>();
+		
+		try {
+			
+			ResultSet result = query(SELECT_PATIENT_PROCEDURES, patientID);
+			
+			try {
+				while (result.next()){
+					procedureList.add(toProcedure(result));
+				}
+			} finally {
+				release(result);
+			}
+			
+		} catch (SQLException e){
+			JOptionPane.showMessageDialog(null, "Failed to read patient's procedure list.", 
+					DATABASE_ERROR, JOptionPane.ERROR_MESSAGE);
+			return new ArrayList<Procedure>();
+		}
+		
+		return procedureList;
+	}
+	
+	
+	/**
+	 * Reads all of the payments a given patient has.
+	 * 
+	 * @param patientID of the patient who's payments will be retrieved
+	 * @return the payment list of the patient
+	 */
+	public ArrayList<Payment> readPatientPaymentList(int patientID) {
+		
+		ArrayList<Payment> paymentList = new ArrayList<Payment>();
+		
+		try {
+			
+			ResultSet result = query(SELECT_PATIENT_PAYMENTS, patientID);
+			
+			try {
+				while (result.next()){
+					paymentList.add(toPayment(result));
+				}
+			} finally {
+				release(result);
+			}
+			
+		} catch (SQLException e){
+			JOptionPane.showMessageDialog(null, "Failed to read patient's payment list.", 
+					DATABASE_ERROR, JOptionPane.ERROR_MESSAGE);
+		}
+		
+		return paymentList;
+		
+	}
+	
+	
+	/**
+	 * Reads all of the procedures from the database.
+	 * 
+	 * @return the procedure list
+	 */
+	public ArrayList<Procedure> readProcedureList(){
+		
+		ArrayList<Procedure> procedureList = new ArrayList<Procedure>();
+		
+		try {
+			
+			ResultSet result = query(SELECT_PROCEDURES);
+			
+			try {
+				while (result.next()){
+					procedureList.add(toProcedure(result));
+				}
+			} finally {
+				release(result);
+			}
+			
+		} catch (SQLException e){
+			JOptionPane.showMessageDialog(null, "Failed to read procedure list.", 
+					DATABASE_ERROR, JOptionPane.ERROR_MESSAGE);
+			return new ArrayList<Procedure>();
+		}
+		
+		return procedureList;
+		
+	}
+	
+	
+	
+	/* 
+	 * =====================================
+	 * ======== Patient-Related SQL ========
+	 * =====================================
+	 */
+	
+	/**
+	 * Retrieves the patient with the given id from the database.
+	 * 
+	 * @param patientID of the patient to be retrieved
+	 * @return the patient with the given id, null if no such patient exists
+	 */
+	public Patient getPatient(int patientID) {
+		
+		Patient patient = null;
+		
+		try {
+			
+			ResultSet result = query(SELECT_PATIENT, patientID);
+			
+			try {
+				// no data - patient doesn't exist
+				if (result.next()){
+					patient = toPatient(result);
+				}
+			} finally {
+				release(result);
+			}
+			
+		} catch (SQLException e){
+			JOptionPane.showMessageDialog(null, "Failed to read patient.", 
+					DATABASE_ERROR, JOptionPane.ERROR_MESSAGE);
+		}
+		
+		return patient;
+		
+	}
+	
+	/**
+	 * Finds the patients with the given phone number, as when they call. The
+	 * numbers are compared by their last digits only, see {@link PhoneIndex}.
+	 * Until every patient's number has been read into memory, which the first
+	 * look up starts in the background, the patients are read using the phone
+	 * number index of the database.
+	 * 
+	 * @param phone number of the caller, as written
+	 * @return the patients with the number, in order of id, an empty list if there are none
+	 */
+	public ArrayList<Patient> findPatientsByPhone(String phone) {
+		
+		String tail = PhoneIndex.tail(phone);
+		ArrayList<Patient> found = new ArrayList<Patient>();
+		
+		if (tail.isEmpty()){
+			return found;
+		}
+		
+		if (!phones.isLoaded()){
+			loadPhoneIndex();
+			return readPatientPage(SELECT_PATIENTS_BY_PHONE, tail);
+		}
+		
+		for (int id : phones.get(tail)){
+			
+			Patient patient = getPatient(id);
+			
+			// patients who've changed their number or been deleted are left in the index until now
+			if (patient != null && tail.equals(PhoneIndex.tail(patient.getPatientPhone()))){
+				found.add(patient);
+			}
+			else {
+				phones.remove(tail, id);
+			}
+			
+		}
+		
+		return found;
+		
+	}
+	
+	/**
+	 * Starts reading every patient's phone number into the {@link PhoneIndex}
+	 * on a low priority background thread, unless it has already been started.
+	 * Patients added or changed meanwhile are added to the index as they're 
+	 * written, so none are missed.
+	 */
+	private synchronized void loadPhoneIndex() {
+		
+		if (phoneLoader != null){
+			return;
+		}
+		
+		phoneLoader = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				
+				try {
+					
+					ResultSet result = query(SELECT_PHONE_TAILS);
+					
+					try {
+						while (result.next()){
+							phones.add(result.getString(2), result.getInt(1));
+						}
+					} finally {
+						release(result);
+					}
+					
+					phones.setLoaded();
+					
+				} catch (SQLException e){
+					JOptionPane.showMessageDialog(null, "Failed to read phone numbers.",
+							DATABASE_ERROR, JOptionPane.ERROR_MESSAGE);
+				}
 				
 			}
-			
-		} catch (SQLException e){
-			JOptionPane.showMessageDialog(null, "Failed to read patient's payment list.", 
-					DATABASE_ERROR, JOptionPane.ERROR_MESSAGE);
-		} catch (ParseException e){
-			JOptionPane.showMessageDialog(null, "Failed to read payment date.", 
-					ERROR, JOptionPane.ERROR_MESSAGE);
-			return new ArrayList<Payment>();
-		}
+		}, "Phone index loader");
 		
-		return paymentList;
+		phoneLoader.setDaemon(true);
+		phoneLoader.setPriority(Thread.MIN_PRIORITY);
+		phoneLoader.start();
 		
 	}
 	
-	
 	/**
-	 * Reads all of the procedures from the database.
+	 * Finds the patients whose names are most like the given name, however
+	 * either has been misspelled, see {@link NameIndex}. Until every name has
+	 * been read into the index, which is started when the database is opened,
+	 * only those read so far are searched.
 	 * 
-	 * @return the procedure list
+	 * @param name searched for
+	 * @param limit the greatest number of patients returned
+	 * @return the patients, most similar first, an empty list if no name is similar enough
 	 */
-	public ArrayList<Procedure> readProcedureList(){
-		
-		ArrayList<Procedure> procedureList = new ArrayList<Procedure>();
+	public ArrayList<Patient> findPatientsByName(String name, int limit) {
 		
-		String sql = "SELECT * FROM Procedures;";
+		ArrayList<Patient> found = new ArrayList<Patient>();
 		
-		try {
+		for (int id : names.search(name, limit)){
 			
-			ResultSet result = execute(sql, QUERY);
+			Patient patient = getPatient(id);
 			
-			while (result.next()){
-				
-				int id = result.getInt("id");
-				String name = result.getString("name");
-				double price = result.getDouble("price");
-				
-				procedureList.add(new Procedure(id, name, price));
-				
+			// a patient deleted while the index was being read may have been read afterwards
+			if (patient != null){
+				found.add(patient);
+			}
+			else {
+				names.remove(id);
 			}
 			
-		} catch (SQLException e){
-			JOptionPane.showMessageDialog(null, "Failed to read procedure list.", 
-					DATABASE_ERROR, JOptionPane.ERROR_MESSAGE);
-			return new ArrayList<Procedure>();
 		}
 		
-		return procedureList;
+		return found;
 		
 	}
 	
-	
-	
-	/*
-	 * =====================================
-	 * ======== Patient-Related SQL ========
-	 * =====================================
-	 */
-	
 	/**
-	 * Retrieves the patient with the given id from the database.
-	 * 
-	 * @param patientID of the patient to be retrieved
-	 * @return the patient with the given id, null if no such patient exists
+	 * Starts reading every patient's name into the {@link NameIndex} on a low
+	 * priority background thread. Patients added or changed meanwhile are put
+	 * into the index as they're written, so none are missed.
 	 */
-	public Patient getPatient(int patientID) {
-		
-		Patient patient = null;
-		
-		String sql = "SELECT * FROM Patients WHERE id=%s;";
-		sql = String.format(sql, patientID);
+	private void loadNameIndex() {
 		
-		try {
-			
-			ResultSet result = execute(sql, QUERY);
-			
-			// no data - patient doesn't exist
-			if (!result.isBeforeFirst()){
-				return null;
+		Thread nameLoader = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				
+				ArrayList<Integer> ids = new ArrayList<Integer>();
+				ArrayList<String> read = new ArrayList<String>();
+				
+				try {
+					
+					ResultSet result = query(SELECT_PATIENT_NAMES);
+					
+					try {
+						while (result.next()){
+							ids.add(result.getInt(1));
+							read.add(result.getString(2));
+						}
+					} finally {
+						release(result);
+					}
+					
+					names.load(ids, read);
+					
+				} catch (SQLException e){
+					JOptionPane.showMessageDialog(null, "Failed to read patient names.",
+							DATABASE_ERROR, JOptionPane.ERROR_MESSAGE);
+				} catch (InterruptedException e){
+					Thread.currentThread().interrupt();
+				}
+				
 			}
-			
-			int id = result.getInt("id");
-			String name = result.getString("name");
-			String address = result.getString("address");
-			String phone = result.getString("phone");
-			
-			patient = new Patient(id, name, address, phone);
-			
-		} catch (SQLException e){
-			JOptionPane.showMessageDialog(null, "Failed to read patient.", 
-					DATABASE_ERROR, JOptionPane.ERROR_MESSAGE);
-		}
+		}, "Name index loader");
 		
-		return patient;
+		nameLoader.setDaemon(true);
+		nameLoader.setPriority(Thread.MIN_PRIORITY);
+		nameLoader.start();
 		
 	}
 	
+	/**
+	 * Returns whether every patient's name has been read into the
+	 * {@link NameIndex} searched by {@link #findPatientsByName(String, int)}.
+	 * 
+	 * @return true if the names have been read, false otherwise
+	 */
+	public boolean isNameIndexLoaded() {
+		return names.isLoaded();
+	}
+	
 	/**
 	 * Retrieves the most recently added patient entry in the database.
 	 * 
@@ -375,25 +1731,19 @@ public class DatabaseController {
 		
 		Patient patient = null;
 		
-		String sql =	"SELECT * FROM Patients " +
-						"WHERE id IN (SELECT MAX(id) FROM Patients);";
-		
 		try {
 			
-			ResultSet result = execute(sql, QUERY);
+			ResultSet result = query(SELECT_NEWEST_PATIENT);
 			
-			// no data - patient doesn't exist
-			if (!result.isBeforeFirst()){
-				return null;
+			try {
+				// no data - patient doesn't exist
+				if (result.next()){
+					patient = toPatient(result);
+				}
+			} finally {
+				release(result);
 			}
 			
-			int id = result.getInt("id");
-			String name = result.getString("name");
-			String address = result.getString("address");
-			String phone = result.getString("phone");
-			
-			patient = new Patient(id, name, address, phone);
-			
 		} catch (SQLException e){
 			JOptionPane.showMessageDialog(null, "There are no entries in the patient table.", 
 					DATABASE_ERROR, JOptionPane.ERROR_MESSAGE);
@@ -413,23 +1763,34 @@ public class DatabaseController {
 	 * @return true if the insertion was successful, false otherwise
 	 */
 	public boolean insertPatient(String name, String address, String phone){
-		
-		// Wrapping ' around strings for insertion
-		name = String.format("'%s'", name);
-		address = String.format("'%s'", address);
-		phone = String.format("'%s'", phone);
-		
-		String sql =	"INSERT INTO Patients (name, address, phone) " +
-						"VALUES (%1$s, %2$s, %3$s);";
-		sql = String.format(sql, name, address, phone);
+		return createPatient(name, address, phone) != null;
+	}
+	
+	/**
+	 * Inserts a new patient into the database & returns the patient with the
+	 * id the database gave it.
+	 * 
+	 * @param name of the patient
+	 * @param address of the patient
+	 * @param phone of the patient
+	 * 
+	 * @return the new patient, null if the insertion failed
+	 */
+	public Patient createPatient(String name, String address, String phone){
 		
 		try {
-			execute(sql, UPDATE);
-			return true;
+			
+			int id = insert(INSERT_PATIENT, name, address, phone, PhoneIndex.digits(phone), PhoneIndex.tail(phone));
+			phones.add(PhoneIndex.tail(phone), id);
+			names.put(id, name);
+			
+			// a new patient has no procedures or payments, so owes nothing
+			return new Patient(id, name, address, phone);
+			
 		} catch (SQLException e){
 			JOptionPane.showMessageDialog(null, "Failed to insert patient.", 
 					DATABASE_ERROR, JOptionPane.ERROR_MESSAGE);
-			return false;
+			return null;
 		}
 		
 	}
@@ -447,21 +1808,16 @@ public class DatabaseController {
 		String address = patient.getPatientAddress();
 		String phone = patient.getPatientPhone();
 		
-		name = String.format("'%s'", name);
-		address = String.format("'%s'", address);
-		phone = String.format("'%s'", phone);
-		
-		String sql =	"UPDATE Patients SET " + 
-						"name=%2$s, "+
-						"address=%3$s, " +
-						"phone=%4$s " + 
-						"WHERE id=%1$s;";
-		
-		sql = String.format(sql, id, name, address, phone);
-		
 		try {
-			execute(sql, UPDATE);
+			
+			update(UPDATE_PATIENT, name, address, phone, PhoneIndex.digits(phone), PhoneIndex.tail(phone), id);
+			
+			// the patient is left under their old number too, until they're looked up by it
+			phones.add(PhoneIndex.tail(phone), id);
+			names.put(id, name);
+			
 			return true;
+			
 		} catch (SQLException e){
 			JOptionPane.showMessageDialog(null, "Failed to update patient.", 
 					DATABASE_ERROR, JOptionPane.ERROR_MESSAGE);
@@ -488,16 +1844,16 @@ public class DatabaseController {
 	 */
 	public boolean deletePatient(int id) {
 		
-		String sql = "DELETE FROM patients WHERE id=%s;";
-		sql = String.format(sql, id);
-		
 		try {
-			execute(sql, UPDATE);
+			update(DELETE_PATIENT, id);
+			names.remove(id);
 			return true;
 		} catch (SQLException e){
 			JOptionPane.showMessageDialog(null, "Failed to delete patient.", 
 					DATABASE_ERROR, JOptionPane.ERROR_MESSAGE);
 			return false;
+		} finally {
+			details.invalidate(id);
 		}
 		
 	}
@@ -511,33 +1867,33 @@ public class DatabaseController {
 	 */
 	
 	/**
-	 * Retrieves the procedure with the given id from the database.
+	 * Retrieves the procedure with the given id, from the {@link ProcedureList}
+	 * if it's held there & from the database otherwise.
 	 * 
 	 * @param procedureID of the procedure to be retrieved
 	 * @return the procedure with the given id, null if no such procedure exists
 	 */
 	public Procedure getProcedure(int procedureID) {
 		
-		Procedure procedure = null;
+		Procedure procedure = ProcedureList.getInstance().getProcedure(procedureID);
 		
-		String sql = "SELECT * FROM Procedures WHERE id=%s;";
-		sql = String.format(sql, procedureID);
+		if (procedure != null){
+			return procedure;
+		}
 		
 		try {
 			
-			ResultSet result = execute(sql, QUERY);
+			ResultSet result = query(SELECT_PROCEDURE, procedureID);
 			
-			// no data - procedure doesn't exist
-			if (!result.isBeforeFirst()){
-				return null;
+			try {
+				// no data - procedure doesn't exist
+				if (result.next()){
+					procedure = toProcedure(result);
+				}
+			} finally {
+				release(result);
 			}
 			
-			int id = result.getInt("id");
-			String name = result.getString("name");
-			double price = result.getDouble("price");
-			
-			procedure = new Procedure(id, name, price);
-			
 		} catch (SQLException e){
 			JOptionPane.showMessageDialog(null, "Failed to read procedure.", 
 					DATABASE_ERROR, JOptionPane.ERROR_MESSAGE);
@@ -548,28 +1904,23 @@ public class DatabaseController {
 	}
 	
 	/**
-	 * Inserts a new procedure into the database.
+	 * Inserts a new procedure into the database, & adds it to the
+	 * {@link ProcedureList}.
 	 * 
 	 * @param name of the procedure
-	 * @param price of the procedure
+	 * @param price of the procedure in cents
 	 * @return true if the insertion was successful, false otherwise
 	 */
-	public boolean insertProcedure(String name, double price){
-		
-		// Wrapping ' around strings for insertion
-		name = String.format("'%s'", name);
-		
-		String sql =	"INSERT INTO Procedures (name, price) " +
-						"VALUES (%1$s, %2$.2f);";
-		sql = String.format(sql, name, price);
+	public boolean insertProcedure(String name, long price){
 		
 		try {
-			execute(sql, UPDATE);
+			int id = insert(INSERT_PROCEDURE, name, price);
+			ProcedureList.put(new Procedure(id, name, price));
 			return true;
 		} catch (SQLException e){
 			
 			String message = "";
-					
+			
 			if (e.getMessage().split(" ")[0].equals("UNIQUE")){
 				message = "Two procedures cannot share the same name.";
 			}
@@ -586,7 +1937,8 @@ public class DatabaseController {
 	}
 	
 	/**
-	 * Updates the given procedure's details in the table.
+	 * Updates the given procedure's details in the table & in the
+	 * {@link ProcedureList}.
 	 * 
 	 * @param procedure to be updated
 	 * @return true if the update was successful, false otherwise
@@ -595,24 +1947,19 @@ public class DatabaseController {
 		
 		int id = procedure.getProcedureNo();
 		String name = procedure.getProcedureName();
-		double price = procedure.getProcedureCost();
-		
-		name = String.format("'%s'", name);
-		
-		String sql =	"UPDATE Procedures SET " + 
-						"name=%2$s, "+
-						"price=%3$.2f " +
-						"WHERE id=%1$s;";
-		
-		sql = String.format(sql, id, name, price);
+		long price = procedure.getProcedureCost();
 		
 		try {
-			execute(sql, UPDATE);
+			update(UPDATE_PROCEDURE, name, price, id);
+			ProcedureList.put(procedure);
 			return true;
 		} catch (SQLException e){
 			JOptionPane.showMessageDialog(null, "Failed to update procedure.", 
 					DATABASE_ERROR, JOptionPane.ERROR_MESSAGE);
 			return false;
+		} finally {
+			// the procedure may be in any patient's details
+			details.clear();
 		}
 		
 	}
@@ -628,23 +1975,24 @@ public class DatabaseController {
 	}
 	
 	/**
-	 * Deletes all records associated with the given procedure id.
+	 * Deletes all records associated with the given procedure id, & removes
+	 * the procedure from the {@link ProcedureList}.
 	 * 
 	 * @param id of the procedure to be deleted
 	 * @return true if the deletion was successful, false otherwise
 	 */
 	public boolean deleteProcedure(int id) {
 		
-		String sql = "DELETE FROM Procedures WHERE id=%s;";
-		sql = String.format(sql, id);
-		
 		try {
-			execute(sql, UPDATE);
+			update(DELETE_PROCEDURE, id);
+			ProcedureList.removeProcedure(id);
 			return true;
 		} catch (SQLException e){
 			JOptionPane.showMessageDialog(null, "Failed to delete procedure.", 
 					DATABASE_ERROR, JOptionPane.ERROR_MESSAGE);
 			return false;
+		} finally {
+			details.clear();
 		}
 		
 	}
@@ -666,17 +2014,13 @@ public class DatabaseController {
 	 */
 	public boolean addProcedureToPatient(int patientID, int procedureID){
 		
-		String sql =	"INSERT INTO ProcedureList (patientID, procedureID) " +
-						"VALUES (%1$s, %2$s);";
-		sql = String.format(sql, patientID, procedureID);
-		
 		try {
-			execute(sql, UPDATE);
+			update(INSERT_PATIENT_PROCEDURE, patientID, procedureID);
 			return true;
 		} catch (SQLException e){
 			
 			String message = "";
-					
+			
 			if (e.getMessage().split(" ")[0].equals("UNIQUE")){
 				message = "A single patient cannot be scheduled for the same procedure.";
 			}
@@ -688,8 +2032,42 @@ public class DatabaseController {
 			
 			return false;
 			
+		} finally {
+			details.invalidate(patientID);
+		}
+		
+	}
+	
+	/**
+	 * Schedules a patient for each of the given procedures in a single 
+	 * transaction. Procedures the patient is already scheduled for are
+	 * skipped rather than failing the rest of the batch.
+	 * 
+	 * @param patientID of the patient being scheduled
+	 * @param procedureIDs of the procedures to schedule
+	 * @return for each procedure, true if it was scheduled, false if it was
+	 * skipped or the transaction failed
+	 */
+	public boolean[] addProceduresToPatient(int patientID, int[] procedureIDs){
+		
+		final ArrayList<Object[]> rows = new ArrayList<Object[]>();
+		
+		for (int procedureID : procedureIDs){
+			rows.add(new Object[] {patientID, procedureID});
 		}
 		
+		int[] counts = transaction(new UnitOfWork<int[]>() {
+			@Override
+			public int[] run() throws SQLException {
+				return batch(INSERT_PATIENT_PROCEDURE_IF_ABSENT, rows);
+			}
+		});
+		
+		// invalidated once the transaction has ended, so the details can't be read back before it commits
+		details.invalidate(patientID);
+		
+		return toResults(counts, rows.size());
+		
 	}
 	
 	/**
@@ -700,14 +2078,8 @@ public class DatabaseController {
 	 */
 	public boolean updateProcedureOfPatient(int patientID, int procedureID, int oldProcedureID) {
 		
-		String sql =	"UPDATE ProcedureList SET " + 
-						"procedureID=%2$s "+
-						"WHERE patientID=%1$s AND procedureID=%3$s;";
-		
-		sql = String.format(sql, patientID, procedureID, oldProcedureID);
-		
 		try {
-			execute(sql, UPDATE);
+			update(UPDATE_PATIENT_PROCEDURE, procedureID, patientID, oldProcedureID);
 			return true;
 		} catch (SQLException e){
 			
@@ -724,6 +2096,8 @@ public class DatabaseController {
 			
 			return false;
 			
+		} finally {
+			details.invalidate(patientID);
 		}
 		
 	}
@@ -736,22 +2110,21 @@ public class DatabaseController {
 	 */
 	public boolean removeProcedureFromPatient(int patientID, int procedureID) {
 		
-		String sql = "DELETE FROM ProcedureList WHERE patientID=%1$s AND procedureID=%2$s;";
-		sql = String.format(sql, patientID, procedureID);
-		
 		try {
-			execute(sql, UPDATE);
+			update(DELETE_PATIENT_PROCEDURE, patientID, procedureID);
 			return true;
 		} catch (SQLException e){
 			JOptionPane.showMessageDialog(null, "Failed to delete procedure.", 
 					DATABASE_ERROR, JOptionPane.ERROR_MESSAGE);
 			return false;
+		} finally {
+			details.invalidate(patientID);
 		}
 		
 	}
 	
 	
-	/*
+	/* 
 	 * =====================================
 	 * ======== Payment-Related SQL ========
 	 * =====================================
@@ -768,63 +2141,141 @@ public class DatabaseController {
 		
 		Payment payment = null;
 		
-		String sql = "SELECT * FROM Payments WHERE id=%s;";
-		sql = String.format(sql, paymentID);
-		
 		try {
 			
-			ResultSet result = execute(sql, QUERY);
+			ResultSet result = query(SELECT_PAYMENT, paymentID);
 			
-			// no data - payment doesn't exist
-			if (!result.isBeforeFirst()){
-				return null;
+			try {
+				// no data - payment doesn't exist
+				if (result.next()){
+					payment = toPayment(result);
+				}
+			} finally {
+				release(result);
 			}
 			
-			int id = result.getInt("id");
-			double amount = result.getDouble("amount");
-			Date date = formatter.parse(result.getString("date"));
-			boolean status = result.getBoolean("paid");
-			
-			payment = new Payment(id, amount, status, date);
-			
 		} catch (SQLException e){
 			JOptionPane.showMessageDialog(null, "Failed to read payment.", 
 					DATABASE_ERROR, JOptionPane.ERROR_MESSAGE);
-		} catch (ParseException e){
-			JOptionPane.showMessageDialog(null, "Failed to read payment date.", 
-					DATABASE_ERROR, JOptionPane.ERROR_MESSAGE);
 		}
 		
 		return payment;
 		
 	}
 	
+	/**
+	 * Reads the payments made between the given days, in the order they were
+	 * made. The payments are found through the index on their dates.
+	 * 
+	 * @param first day of the range
+	 * @param last day of the range, included in it
+	 * @return the payments made, an empty list if they couldn't be read
+	 */
+	public ArrayList<Payment> readPaymentsBetween(LocalDate first, LocalDate last) {
+		
+		ArrayList<Payment> paymentList = new ArrayList<Payment>();
+		
+		try {
+			
+			ResultSet result = query(SELECT_PAYMENTS_BETWEEN, dates.startOf(first), dates.endOf(last));
+			
+			try {
+				while (result.next()){
+					paymentList.add(toPayment(result));
+				}
+			} finally {
+				release(result);
+			}
+			
+		} catch (SQLException e){
+			JOptionPane.showMessageDialog(null, "Failed to read payments.",
+					DATABASE_ERROR, JOptionPane.ERROR_MESSAGE);
+			return new ArrayList<Payment>();
+		}
+		
+		return paymentList;
+		
+	}
+	
+	/**
+	 * Adds up the payments which have been paid between the given days,
+	 * without reading the payments themselves.
+	 * 
+	 * @param first day of the range
+	 * @param last day of the range, included in it
+	 * @return the amount paid in cents, 0 if it couldn't be read
+	 */
+	public long readTakingsBetween(LocalDate first, LocalDate last) {
+		
+		try {
+			
+			ResultSet result = query(SUM_PAID_BETWEEN, dates.startOf(first), dates.endOf(last));
+			
+			try {
+				return result.next() ? result.getLong(1) : 0;
+			} finally {
+				release(result);
+			}
+			
+		} catch (SQLException e){
+			JOptionPane.showMessageDialog(null, "Failed to read takings.",
+					DATABASE_ERROR, JOptionPane.ERROR_MESSAGE);
+			return 0;
+		}
+		
+	}
+	
 	/**
 	 * Inserts a new payment into the database.
 	 * 
 	 * @param patientID the id of the patient making the payment
-	 * @param amount of money being paid
+	 * @param amount of money being paid in cents
 	 * @param status whether the money has been paid or not
 	 * 
 	 * @return true if the insertion was successful, false otherwise
 	 */
-	public boolean insertPayment(int patientID, double amount, boolean status){
-		
-		int paid = status == true ? 1:0;
-		
-		String sql =	"INSERT INTO Payments (patientID, amount, date, paid) " +
-						"VALUES (%1$s, %2$.2f, CURRENT_TIMESTAMP, %3$s);";
-		sql = String.format(sql, patientID, amount, paid);
+	public boolean insertPayment(int patientID, long amount, boolean status){
 		
 		try {
-			execute(sql, UPDATE);
+			update(INSERT_PAYMENT, patientID, amount, dates.now(), status);
 			return true;
 		} catch (SQLException e){
 			JOptionPane.showMessageDialog(null, "Failed to insert payment.", 
 					DATABASE_ERROR, JOptionPane.ERROR_MESSAGE);
 			return false;
+		} finally {
+			details.invalidate(patientID);
+		}
+		
+	}
+	
+	/**
+	 * Inserts each of the given payments for a patient in a single transaction.
+	 * If any payment fails to insert, none of them are inserted.
+	 * 
+	 * @param patientID the id of the patient making the payments
+	 * @param payments to be inserted, the amount & status of each is used
+	 * @return for each payment, true if it was inserted, false otherwise
+	 */
+	public boolean[] insertPayments(int patientID, List<Payment> payments){
+		
+		final ArrayList<Object[]> rows = new ArrayList<Object[]>();
+		
+		for (Payment payment : payments){
+			rows.add(new Object[] {patientID, payment.getPaymentAmount(), dates.now(), payment.getPaymentStatus()});
 		}
 		
+		int[] counts = transaction(new UnitOfWork<int[]>() {
+			@Override
+			public int[] run() throws SQLException {
+				return batch(INSERT_PAYMENT, rows);
+			}
+		});
+		
+		details.invalidate(patientID);
+		
+		return toResults(counts, rows.size());
+		
 	}
 	
 	/**
@@ -836,25 +2287,18 @@ public class DatabaseController {
 	public boolean updatePayment(Payment payment) {
 		
 		int id = payment.getPaymentNo();
-		double amount = payment.getPaymentAmount();
+		long amount = payment.getPaymentAmount();
 		boolean status = payment.getPaymentStatus();
 		
-		int paid = status == true ? 1:0;
-		
-		String sql =	"UPDATE Payments SET " + 
-						"amount=%2$.2f, " +
-						"paid=%3$s " +
-						"WHERE id=%1$s;";
-		
-		sql = String.format(sql, id, amount, paid);
-		
 		try {
-			execute(sql, UPDATE);
+			update(UPDATE_PAYMENT, amount, status, id);
 			return true;
 		} catch (SQLException e){
 			JOptionPane.showMessageDialog(null, "Failed to update payment.", 
 					DATABASE_ERROR, JOptionPane.ERROR_MESSAGE);
 			return false;
+		} finally {
+			details.invalidatePayment(id);
 		}
 		
 	}
@@ -877,18 +2321,154 @@ public class DatabaseController {
 	 */
 	public boolean deletePayment(int id) {
 		
-		String sql = "DELETE FROM Payments WHERE id=%s;";
-		sql = String.format(sql, id);
-		
 		try {
-			execute(sql, UPDATE);
+			update(DELETE_PAYMENT, id);
 			return true;
 		} catch (SQLException e){
 			JOptionPane.showMessageDialog(null, "Failed to delete payment.", 
 					DATABASE_ERROR, JOptionPane.ERROR_MESSAGE);
 			return false;
+		} finally {
+			details.invalidatePayment(id);
 		}
 		
 	}
 	
+	
+	
+	/* 
+	 * =====================================
+	 * ========= Result Set Mapping ========
+	 * =====================================
+	 */
+	
+	/**
+	 * Creates a patient from the current row of the given result set.
+	 * 
+	 * @param result positioned on a row of the Patients table, along with the patient's balance
+	 * @return the patient
+	 */
+	private Patient toPatient(ResultSet result) throws SQLException {
+		
+		int id = result.getInt("id");
+		String name = result.getString("name");
+		String address = result.getString("address");
+		String phone = result.getString("phone");
+		
+		Patient patient = new Patient(id, name, address, phone);
+		patient.setBalance(result.getLong("owed"));
+		
+		return patient;
+		
+	}
+	
+	/**
+	 * Creates a procedure from the current row of the given result set.
+	 * 
+	 * @param result positioned on a row of the Procedures table
+	 * @return the procedure
+	 */
+	private Procedure toProcedure(ResultSet result) throws SQLException {
+		
+		int id = result.getInt("id");
+		String name = result.getString("name");
+		long price = result.getLong("price");
+		
+		return new Procedure(id, name, price);
+		
+	}
+	
+	/**
+	 * Creates a payment from the current row of the given result set.
+	 * 
+	 * @param result positioned on a row of the Payments table
+	 * @return the payment
+	 */
+	private Payment toPayment(ResultSet result) throws SQLException {
+		
+		int id = result.getInt("id");
+		long amount = result.getLong("amount");
+		boolean status = result.getBoolean("paid");
+		
+		Date date = dates.decode(result.getLong("date"));
+		
+		return new Payment(id, amount, status, date);
+		
+	}
+	
+	
+	
+	// GETTERS
+	
+	/**
+	 * Returns the SQLite settings the database was opened with, as read
+	 * back from the writer connection.
+	 * 
+	 * @return the active value of each pragma the profile sets, on a single line
+	 */
+	public String getDatabaseSettings(){
+		return pool.getSettings();
+	}
+	
+	public int getStatementCacheHits(){
+		return pool.getStatementCacheHits();
+	}
+	
+	public int getStatementCacheMisses(){
+		return pool.getStatementCacheMisses();
+	}
+	
+	
+	public int getDetailCacheHits(){
+		return details.getHits();
+	}
+	
+	public int getDetailCacheMisses(){
+		return details.getMisses();
+	}
+	
+	public int getDetailCacheEvictions(){
+		return details.getEvictions();
+	}
+	
+	
+	/**
+	 * Receives each patient read by {@link DatabaseController#streamPatients(PatientHandler, int, int)}.
+	 * 
+	 * @author Alan Sheehan - R00111909
+	 */
+	public interface PatientHandler {
+		
+		/**
+		 * Handles a single patient, along with their procedures & payments.
+		 * 
+		 * @param patient read from the database
+		 * @return true to carry on reading patients, false to stop
+		 */
+		boolean handle(Patient patient);
+		
+	}
+	
+	
+	/**
+	 * A unit of work made up of one or more database operations, run as a 
+	 * single transaction by {@link DatabaseController#transaction(UnitOfWork)} 
+	 * or {@link DatabaseController#readTransaction(UnitOfWork)}.
+	 * 
+	 * @author Alan Sheehan - R00111909
+	 * 
+	 * @param <T> type of the result of the work
+	 */
+	public interface UnitOfWork <T> {
+		
+		/**
+		 * Performs the work.
+		 * 
+		 * @return the result of the work
+		 * @throws SQLException if the work fails
+		 */
+		T run() throws SQLException;
+		
+	}
+	
 }
@@ -0,0 +1,259 @@
+package controller;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+
+import javax.swing.JOptionPane;
+
+import org.sqlite.SQLiteConfig;
+import org.sqlite.SQLiteConfig.JournalMode;
+import org.sqlite.SQLiteConfig.SynchronousMode;
+import org.sqlite.SQLiteConfig.TempStore;
+
+
+/**
+ * The storage settings the SQLite database is opened with. Read from the file
+ * "dentalpractice.properties" if it exists, any setting not given in the file
+ * keeps its default value.
+ * 
+ * @author Alan Sheehan - R00111909
+ */
+public class DatabaseProfile {
+	
+	private File profileFile = new File("dentalpractice.properties");
+	
+	private String databaseFile = "dentalpractice.db";
+	private JournalMode journalMode = JournalMode.WAL;
+	private SynchronousMode synchronous = SynchronousMode.NORMAL;
+	private int pageSize = 4096;
+	private int cacheSize = -16000;
+	private long mmapSize = 268435456;
+	private TempStore tempStore = TempStore.MEMORY;
+	
+	private int readers = 2;
+	
+	private static final String[] REPORTED_PRAGMAS = {"journal_mode", "synchronous", "page_size",
+			"cache_size", "mmap_size", "temp_store", "foreign_keys"};
+	
+	private static final String PROFILE_ERROR = "Profile Error";
+	
+	
+	/**
+	 * Default constructor which reads the profile from the properties file,
+	 * if one exists.
+	 */
+	public DatabaseProfile(){
+		
+		if (profileFile.exists()){
+			load();
+		}
+		
+	}
+	
+	
+	/**
+	 * Reads each setting from the properties file. Settings with values that
+	 * can't be understood are reported & left at their default.
+	 */
+	private void load(){
+		
+		Properties properties = new Properties();
+		
+		try {
+			
+			InputStream in = new FileInputStream(profileFile);
+			
+			try {
+				properties.load(in);
+			} finally {
+				in.close();
+			}
+			
+		} catch (IOException e){
+			JOptionPane.showMessageDialog(null, "Failed to read \"dentalpractice.properties\" - using the default database profile.",
+					PROFILE_ERROR, JOptionPane.WARNING_MESSAGE);
+			return;
+		}
+		
+		databaseFile = properties.getProperty("database.file", databaseFile).trim();
+		journalMode = readEnum(properties, "journal_mode", JournalMode.class, journalMode);
+		synchronous = readEnum(properties, "synchronous", SynchronousMode.class, synchronous);
+		pageSize = (int) readNumber(properties, "page_size", pageSize);
+		cacheSize = (int) readNumber(properties, "cache_size", cacheSize);
+		mmapSize = readNumber(properties, "mmap_size", mmapSize);
+		tempStore = readEnum(properties, "temp_store", TempStore.class, tempStore);
+		readers = (int) Math.max(0, readNumber(properties, "pool.readers", readers));
+		
+	}
+	
+	/**
+	 * Reads a setting which is one of the values of the given enum.
+	 * 
+	 * @param properties the setting is read from
+	 * @param key of the setting
+	 * @param type of the setting
+	 * @param defaultValue used if the setting is missing or invalid
+	 * @return the value of the setting
+	 */
+	private <E extends Enum<E>> E readEnum(Properties properties, String key, Class<E> type, E defaultValue){
+		
+		String value = properties.getProperty(key);
+		
+		if (value == null){
+			return defaultValue;
+		}
+		
+		try {
+			return Enum.valueOf(type, value.trim().toUpperCase());
+		} catch (IllegalArgumentException e){
+			invalidSetting(key, defaultValue);
+			return defaultValue;
+		}
+		
+	}
+	
+	/**
+	 * Reads a setting which is a whole number.
+	 * 
+	 * @param properties the setting is read from
+	 * @param key of the setting
+	 * @param defaultValue used if the setting is missing or invalid
+	 * @return the value of the setting
+	 */
+	private long readNumber(Properties properties, String key, long defaultValue){
+		
+		String value = properties.getProperty(key);
+		
+		if (value == null){
+			return defaultValue;
+		}
+		
+		try {
+			return Long.parseLong(value.trim());
+		} catch (NumberFormatException e){
+			invalidSetting(key, defaultValue);
+			return defaultValue;
+		}
+		
+	}
+	
+	/**
+	 * Reports that a setting in the properties file has an invalid value.
+	 * 
+	 * @param key of the setting
+	 * @param defaultValue used instead
+	 */
+	private void invalidSetting(String key, Object defaultValue){
+		JOptionPane.showMessageDialog(null, "Invalid value for \"" + key + "\" in \"dentalpractice.properties\" - using " + defaultValue + ".", 
+				PROFILE_ERROR, JOptionPane.WARNING_MESSAGE);
+	}
+	
+	
+	/**
+	 * Applies the profile's settings to the given configuration, used when
+	 * opening a connection.
+	 * 
+	 * @param config the settings are applied to
+	 */
+	public void applyTo(SQLiteConfig config){
+		
+		config.setSynchronous(synchronous);
+		config.setCacheSize(cacheSize);
+		config.setTempStore(tempStore);
+		
+	}
+	
+	/**
+	 * Applies the settings which depend on the order they're set in to an 
+	 * opened connection. The page size has to be set before the journal mode, 
+	 * as a database in WAL mode can no longer change its page size. Read-only
+	 * connections use the journal mode already set by the writer.
+	 * 
+	 * @param connection the settings are applied to
+	 * @param readOnly whether the connection can only be read from
+	 */
+	public void applyTo(Connection connection, boolean readOnly) throws SQLException {
+		
+		Statement statement = connection.createStatement();
+		
+		try {
+			
+			if (!readOnly){
+				statement.execute("PRAGMA page_size = " + pageSize + ";");
+				statement.execute("PRAGMA journal_mode = " + journalMode.name() + ";");
+			}
+			
+			statement.execute("PRAGMA mmap_size = " + mmapSize + ";");
+			
+		} finally {
+			statement.close();
+		}
+		
+	}
+	
+	
+	/**
+	 * Reads the value of each pragma the profile sets from the given
+	 * connection, so the active settings can be known at launch.
+	 * 
+	 * @param connection to read the settings from
+	 * @return the active value of each pragma, on a single line
+	 */
+	public String report(Connection connection){
+		
+		StringBuilder active = new StringBuilder("SQLite profile (" + databaseFile + ", " + readers + " readers):");
+		
+		try {
+			
+			Statement statement = connection.createStatement();
+			
+			try {
+				
+				for (String pragma : REPORTED_PRAGMAS){
+					
+					ResultSet result = statement.executeQuery("PRAGMA " + pragma + ";");
+					
+					try {
+						active.append(" " + pragma + "=" + (result.next() ? result.getString(1) : "?"));
+					} finally {
+						result.close();
+					}
+					
+				}
+				
+			} finally {
+				statement.close();
+			}
+			
+		} catch (SQLException e){
+			active.append(" unavailable");
+		}
+		
+		return active.toString();
+		
+	}
+	
+	
+	
+	// GETTERS
+	
+	public String getDatabaseFile(){
+		return databaseFile;
+	}
+	
+	public JournalMode getJournalMode(){
+		return journalMode;
+	}
+	
+	public int getReaders(){
+		return readers;
+	}
+	
+}
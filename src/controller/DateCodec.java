@@ -0,0 +1,113 @@
+package controller;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+
+
+/**
+ * Converts the dates of payments to & from the way they're stored in the
+ * database - as the number of milliseconds since the epoch - & works out where
+ * the days & months the database is searched by begin, in the time zone of
+ * the practice.
+ * 
+ * A codec is immutable, so a single codec is shared by every connection's
+ * thread without being locked.
+ * 
+ * @author Alan Sheehan - R00111909
+ */
+final class DateCodec {
+	
+	private final ZoneId zone;
+	
+	
+	/**
+	 * Constructor which takes in the time zone days & months begin in.
+	 * 
+	 * @param zone of the practice
+	 */
+	public DateCodec(ZoneId zone){
+		this.zone = zone;
+	}
+	
+	
+	/**
+	 * Converts a date as stored to a Date.
+	 * 
+	 * @param millis since the epoch
+	 * @return the date
+	 */
+	public Date decode(long millis){
+		return new Date(millis);
+	}
+	
+	/**
+	 * Converts a date to the way it's stored.
+	 * 
+	 * @param date to be stored
+	 * @return the milliseconds since the epoch
+	 */
+	public long encode(Date date){
+		return date.getTime();
+	}
+	
+	/**
+	 * Returns the current date & time, as stored.
+	 * 
+	 * @return the milliseconds since the epoch
+	 */
+	public long now(){
+		return System.currentTimeMillis();
+	}
+	
+	/**
+	 * Returns the moment the given day begins, as stored.
+	 * 
+	 * @param day in the time zone of the codec
+	 * @return the milliseconds since the epoch at midnight
+	 */
+	public long startOf(LocalDate day){
+		return day.atStartOfDay(zone).toInstant().toEpochMilli();
+	}
+	
+	/**
+	 * Returns the moment the day after the given day begins, as stored, so
+	 * that a range of days can be searched for as the dates before it.
+	 * 
+	 * @param day in the time zone of the codec
+	 * @return the milliseconds since the epoch at midnight at the end of the day
+	 */
+	public long endOf(LocalDate day){
+		return startOf(day.plusDays(1));
+	}
+	
+	/**
+	 * Returns the moment the month the given number of months ago began.
+	 * 
+	 * @param months before the current month, 0 for the start of this month
+	 * @return the milliseconds since the epoch at midnight on the first of the month
+	 */
+	public long startOfMonth(int months){
+		return startOf(LocalDate.now(zone).withDayOfMonth(1).minusMonths(months));
+	}
+	
+	/**
+	 * Returns the day a stored date falls on.
+	 * 
+	 * @param millis since the epoch
+	 * @return the day in the time zone of the codec
+	 */
+	public LocalDate toDay(long millis){
+		return Instant.ofEpochMilli(millis).atZone(zone).toLocalDate();
+	}
+	
+	
+	
+	// GETTERS
+	
+	public ZoneId getZone(){
+		return zone;
+	}
+	
+}
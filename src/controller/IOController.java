@@ -125,7 +125,7 @@ public class IOController {
 	 */
 	public void writeProcedureList (){
 		
-		ArrayList<Procedure> toSave = ProcedureList.getInstance();
+		ArrayList<Procedure> toSave = new ArrayList<Procedure>(ProcedureList.getInstance().getProcedures());
 		
 		try {
 			
@@ -0,0 +1,68 @@
+package controller;
+
+
+/**
+ * Keeps a running count, average & maximum of how long an operation takes,
+ * from the moment it is requested to the moment its result is displayed.
+ * 
+ * @author Alan Sheehan - R00111909
+ */
+class LatencyMetric {
+	
+	private String name;
+	
+	private int count = 0;
+	private long total = 0;
+	private long max = 0;
+	
+	
+	/**
+	 * Constructor which takes in the name the metric is reported under.
+	 * 
+	 * @param name of the operation measured
+	 */
+	public LatencyMetric(String name){
+		this.name = name;
+	}
+	
+	
+	/**
+	 * Records a single occurrence of the operation.
+	 * 
+	 * @param started the {@link System#nanoTime()} at which the operation was requested
+	 */
+	public synchronized void record(long started){
+		
+		long elapsed = System.nanoTime() - started;
+		
+		count++;
+		total += elapsed;
+		max = Math.max(max, elapsed);
+		
+	}
+	
+	
+	@Override
+	public synchronized String toString() {
+		
+		return String.format("%s: %d, %.1f ms average, %.1f ms max", name, count, getAverageMillis(), getMaxMillis());
+		
+	}
+	
+	
+	
+	// GETTERS
+	
+	public synchronized int getCount(){
+		return count;
+	}
+	
+	public synchronized double getAverageMillis(){
+		return count == 0 ? 0 : total / (count * 1e6);
+	}
+	
+	public synchronized double getMaxMillis(){
+		return max / 1e6;
+	}
+	
+}
@@ -5,10 +5,13 @@ import java.awt.event.ActionListener;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Logger;
 
 import javax.swing.JFrame;
 import javax.swing.JOptionPane;
 import javax.swing.JTable;
+import javax.swing.SwingWorker;
 import javax.swing.event.ListSelectionEvent;
 import javax.swing.event.ListSelectionListener;
 
@@ -28,19 +31,27 @@ import dialog.ProcedureRemoveDialog;
  * 
  * @author Alan Sheehan - R00111909
  */
-public class MasterController implements PatientController.Callback, 
-											ProcedureController.Callback,
+public class MasterController implements ProcedureController.Callback,
 											PaymentController.Callback {
 	
+	private static final Logger LOGGER = Logger.getLogger(MasterController.class.getName());
+	
 	private RootView view;
 	
-	private ArrayList<Patient> patientList;
+	private PatientRepository patients;
 	
 	private PatientController patientControl;
 	private ProcedureController procedureControl;
 	private PaymentController paymentControl;
 	
 	private DatabaseController dbControl;
+	
+	// the details of the selected patient being read, & the number of the selection they were read for
+	private SwingWorker<PatientDetails, Void> detailLoader;
+	private int detailGeneration = 0;
+	private LatencyMetric detailLatency = new LatencyMetric("Patient details loaded");
+	private PatientPrefetcher prefetcher;
+	
 	@SuppressWarnings("unused")
 	private ReportController reportControl;
 	
@@ -49,11 +60,14 @@ public class MasterController implements PatientController.Callback,
 		this.view = view;
 		
 		dbControl = DatabaseController.getInstance();
-		patientList = dbControl.readPatientList();
+		LOGGER.info(dbControl.getDatabaseSettings());
+		
+		patients = new PatientRepository(dbControl);
+		prefetcher = new PatientPrefetcher(dbControl);
 	
 		ProcedureList.setProcedureList(dbControl.readProcedureList());
 		
-		patientControl = new PatientController(this, patientList, view);
+		patientControl = new PatientController(patients, view);
 		reportControl = new ReportController(view);
 		
 		// adds dummy data to both controllers until a patient is selected
@@ -76,10 +90,12 @@ public class MasterController implements PatientController.Callback,
 			@Override
 			public void valueChanged(ListSelectionEvent e) {
 
-				int index = view.getPatientTable().getSelectedRow();
+				JTable table = view.getPatientTable();
+				int index = table.getSelectedRow();
 				
 				if (index < 0){
-					// no selection made - disabling selection-dependent buttons
+					// no selection made - abandoning any details being read & disabling selection-dependent buttons
+					cancelDetails();
 					view.getEditPatientButton().setEnabled(false);
 					view.getRemovePatientButton().setEnabled(false);
 					view.getAddProcedureButton().setEnabled(false);
@@ -92,11 +108,19 @@ public class MasterController implements PatientController.Callback,
 					view.getAddProcedureButton().setEnabled(true);
 					view.getAddPaymentButton().setEnabled(true);
 					
-					index = view.getPatientTable().convertRowIndexToModel(index);
-					Patient patient = ((PatientTableModel) view.getPatientTable().getModel()).get(index);
+					PatientTableModel model = (PatientTableModel) table.getModel();
+					Patient patient = model.get(table.convertRowIndexToModel(index));
 					
-					procedureControl.setDataModel(dbControl.readPatientProcedureList(patient.getPatientNo()));
-					paymentControl.setDataModel(dbControl.readPatientPaymentList(patient.getPatientNo()));
+					if (patient != null){
+						prefetcher.selected(patient.getPatientNo());
+						loadDetails(patient);
+					}
+					
+					// reading the details of the rows above & below, in the order displayed
+					Patient previous = index > 0 ? model.get(table.convertRowIndexToModel(index - 1)) : null;
+					Patient next = index < table.getRowCount() - 1 ? model.get(table.convertRowIndexToModel(index + 1)) : null;
+					
+					prefetcher.prefetch(next, previous);
 				}
 				
 			}
@@ -158,6 +182,10 @@ public class MasterController implements PatientController.Callback,
 				switch (choice){
 				
 				case JOptionPane.YES_OPTION:
+					LOGGER.info(detailLatency.toString());
+					LOGGER.info(prefetcher.toString());
+					prefetcher.shutdown();
+					dbControl.close();
 					view.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 					break;
 				
@@ -180,11 +208,10 @@ public class MasterController implements PatientController.Callback,
 				if (procedure != null){
 					
 					String name = procedure.getProcedureName();
-					double cost = procedure.getProcedureCost();
+					long cost = procedure.getProcedureCost();
 					
-					if (dbControl.insertProcedure(name, cost)){
-						ProcedureList.setProcedureList(dbControl.readProcedureList());
-					}
+					// the database adds the procedure to the procedure list
+					dbControl.insertProcedure(name, cost);
 					
 				}
 				
@@ -206,8 +233,10 @@ public class MasterController implements PatientController.Callback,
 					
 					int procedureID = procedure.getProcedureNo();
 					
+					// the database removes the procedure from the procedure list
 					if (dbControl.deleteProcedure(procedureID)){
-						ProcedureList.setProcedureList(dbControl.readProcedureList());
+						// every patient who had the procedure now owes less
+						patientControl.refresh();
 					}
 					
 				}
@@ -219,11 +248,99 @@ public class MasterController implements PatientController.Callback,
 	}
 	
 	
-	@Override
-	public void refreshPatientList() {
-		patientControl.setDataModel(dbControl.readPatientList());
+	/**
+	 * Reads the procedures & payments of the given patient on a background
+	 * thread, displaying them once read. Any details still being read for an
+	 * earlier selection are abandoned, & are never displayed. The details of
+	 * a recently selected patient are displayed at once from the cache.
+	 * 
+	 * @param patient who has been selected
+	 */
+	private void loadDetails(final Patient patient) {
+		
+		final long selected = System.nanoTime();
+		final int generation = cancelDetails();
+		
+		if (dbControl.isPatientDetailsCached(patient.getPatientNo())){
+			
+			PatientDetails details = dbControl.readPatientDetails(patient.getPatientNo());
+			
+			if (details != null){
+				procedureControl.setDataModel(details.getProcedures());
+				paymentControl.setDataModel(details.getPayments());
+				detailLatency.record(selected);
+				return;
+			}
+			
+		}
+		
+		// not leaving the previous patient's details open to editing while the new ones are read
+		procedureControl.setDataModel(new ArrayList<Procedure>());
+		paymentControl.setDataModel(new ArrayList<Payment>());
+		
+		detailLoader = new SwingWorker<PatientDetails, Void>() {
+			
+			@Override
+			protected PatientDetails doInBackground() throws Exception {
+				
+				return dbControl.readPatientDetails(patient.getPatientNo());
+				
+			}
+			
+			@Override
+			protected void done() {
+				
+				// the selection has moved on since these details were requested
+				if (isCancelled() || generation != detailGeneration){
+					return;
+				}
+				
+				try {
+					
+					PatientDetails details = get();
+					
+					if (details != null){
+						procedureControl.setDataModel(details.getProcedures());
+						paymentControl.setDataModel(details.getPayments());
+						detailLatency.record(selected);
+					}
+					
+				} catch (InterruptedException e){
+					
+					Thread.currentThread().interrupt();
+					
+				} catch (ExecutionException e){
+					
+					JOptionPane.showMessageDialog(view, "Failed to read the patient's details:\n" + e.getCause(), 
+							"Database Error", JOptionPane.ERROR_MESSAGE);
+					
+				}
+				
+			}
+			
+		};
+		
+		detailLoader.execute();
+		
 	}
 	
+	/**
+	 * Abandons the details being read for the current selection, if any.
+	 * 
+	 * @return the number of the next selection
+	 */
+	private int cancelDetails() {
+		
+		if (detailLoader != null){
+			detailLoader.cancel(false);
+			detailLoader = null;
+		}
+		
+		return ++detailGeneration;
+		
+	}
+	
+	
 	@Override
 	public void refreshPatientProcedureList() {
 		JTable patients = view.getPatientTable();
@@ -231,7 +348,13 @@ public class MasterController implements PatientController.Callback,
 		Patient patient = ((PatientTableModel) patients.getModel()).get(patientRow);
 		int patientID = patient.getPatientNo();
 		
-		procedureControl.setDataModel(dbControl.readPatientProcedureList(patientID));
+		PatientDetails details = dbControl.readPatientDetails(patientID);
+		
+		if (details != null){
+			procedureControl.setDataModel(details.getProcedures());
+		}
+		
+		refreshBalance(patientRow);
 	}
 	
 	@Override
@@ -241,7 +364,47 @@ public class MasterController implements PatientController.Callback,
 		Patient patient = ((PatientTableModel) patients.getModel()).get(patientRow);
 		int patientID = patient.getPatientNo();
 		
-		paymentControl.setDataModel(dbControl.readPatientPaymentList(patientID));
+		PatientDetails details = dbControl.readPatientDetails(patientID);
+		
+		if (details != null){
+			paymentControl.setDataModel(details.getPayments());
+		}
+		
+		refreshBalance(patientRow);
+	}
+	
+	/**
+	 * Re-reads the balance of the patient in the given row of the patient
+	 * table, after the database has updated it. When the table is ordered by
+	 * balance the patient's row may move, so it is selected again.
+	 * 
+	 * @param patientRow the model index of the patient
+	 */
+	private void refreshBalance(int patientRow) {
+		JTable table = view.getPatientTable();
+		PatientTableModel model = (PatientTableModel) table.getModel();
+		Patient patient = model.get(patientRow);
+		
+		patients.refreshBalance(patient);
+		model.set(patientRow, patient);
+		
+		int row = table.convertRowIndexToView(model.find(patient));
+		
+		if (row != table.getSelectedRow()){
+			table.setRowSelectionInterval(row, row);
+		}
+	}
+	
+	
+	
+	// GETTERS
+	
+	public LatencyMetric getDetailLatency(){
+		return detailLatency;
+	}
+	
+	public PatientPrefetcher getPrefetcher(){
+		return prefetcher;
 	}
 	
 }
@@ -0,0 +1,90 @@
+package controller;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+
+/**
+ * A single, numbered change to the database schema. Applied once, in order of
+ * version, by the {@link SchemaMigrator}. Changes which can't be expressed as
+ * plain SQL can override {@link #apply(Connection)}, & changes which replace
+ * tables are made by a {@link TableRebuild}.
+ * 
+ * @author Alan Sheehan - R00111909
+ */
+class Migration {
+	
+	private int version;
+	private String description;
+	private String[] statements;
+	
+	
+	/**
+	 * Creates a migration which runs the given SQL statements in order.
+	 * 
+	 * @param version of the schema the migration produces
+	 * @param description of the change
+	 * @param statements the sql statements making up the change
+	 */
+	public Migration(int version, String description, String... statements){
+		
+		this.version = version;
+		this.description = description;
+		this.statements = statements;
+		
+	}
+	
+	
+	/**
+	 * Applies the change to the database. Called within a transaction which
+	 * also records the new schema version.
+	 * 
+	 * @param connection to the database being migrated
+	 * @throws SQLException if the change fails
+	 */
+	public void apply(Connection connection) throws SQLException {
+		
+		Statement statement = connection.createStatement();
+		
+		try {
+			for (String sql : statements){
+				statement.executeUpdate(sql);
+			}
+		} finally {
+			statement.close();
+		}
+		
+	}
+	
+	
+	/**
+	 * Returns whether the migration drops & recreates tables which others
+	 * refer to, in which case the {@link SchemaMigrator} turns foreign keys
+	 * off while it's applied & checks them once it's done.
+	 * 
+	 * @return true if tables are rebuilt, false otherwise
+	 */
+	public boolean rebuildsTables(){
+		return false;
+	}
+	
+	
+	@Override
+	public String toString() {
+		return version + " - " + description;
+	}
+	
+	
+	
+	// GETTERS
+	
+	public int getVersion(){
+		return version;
+	}
+	
+	public String getDescription(){
+		return description;
+	}
+	
+}
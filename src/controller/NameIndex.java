@@ -0,0 +1,385 @@
+package controller;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+
+/**
+ * An in-memory index of the patients' names, for finding a name however it
+ * has been misspelled. Each word of a name is broken into trigrams - the
+ * runs of three letters in the word, padded with spaces at either end - &
+ * two names are as similar as the share of their trigrams they have in
+ * common, so "Sheahan" & "Sheehan" are similar while "Sheahan" & "Shaw" are
+ * not.
+ * 
+ * Every name is held under a slot, & each trigram lists the slots of the
+ * names containing it, so that a search only counts the trigrams of the
+ * names sharing at least one with the name searched for.
+ * 
+ * @author Alan Sheehan - R00111909
+ */
+class NameIndex {
+	
+	// the least share of trigrams a name must have in common with the name searched for to be matched
+	private static final double MIN_SIMILARITY = 0.3;
+	
+	// the number of names each thread breaks into trigrams when loading
+	private static final int LOAD_BATCH = 10000;
+	
+	private boolean loaded = false;
+	
+	// each patient's slot, the patient in & the trigrams of each slot, & the slots no longer used
+	private HashMap<Integer, Integer> slots = new HashMap<Integer, Integer>();
+	private int[] patients = new int[0];
+	private long[][] trigrams = new long[0][];
+	private int used = 0;
+	private Slots free = new Slots();
+	
+	// the slots of the names containing each trigram
+	private HashMap<Long, Slots> postings = new HashMap<Long, Slots>();
+	
+	
+	/**
+	 * Breaks the given name into its distinct trigrams, ignoring case &
+	 * anything but letters & digits. Each trigram is packed into a long, as
+	 * three 16 bit characters.
+	 * 
+	 * @param name to be broken up
+	 * @return the trigrams of the name, empty if it has no letters or digits
+	 */
+	public static long[] trigrams(String name){
+		
+		long[] grams = new long[name.length() * 2 + 2];
+		int count = 0;
+		
+		for (String word : name.toLowerCase().split("[^\\p{L}\\p{N}]+")){
+			
+			if (word.isEmpty()){
+				continue;
+			}
+			
+			// two spaces before & one after the word, as a word's start counts for more than its end
+			String padded = "  " + word + " ";
+			
+			for (int i = 0 ; i + 3 <= padded.length() ; i++){
+				
+				if (count == grams.length){
+					grams = Arrays.copyOf(grams, count * 2);
+				}
+				
+				grams[count++] = ((long) padded.charAt(i) << 32) | ((long) padded.charAt(i + 1) << 16) | padded.charAt(i + 2);
+				
+			}
+			
+		}
+		
+		// removing the trigrams which appear more than once
+		Arrays.sort(grams, 0, count);
+		int distinct = 0;
+		
+		for (int i = 0 ; i < count ; i++){
+			if (distinct == 0 || grams[i] != grams[distinct - 1]){
+				grams[distinct++] = grams[i];
+			}
+		}
+		
+		return Arrays.copyOf(grams, distinct);
+		
+	}
+	
+	
+	/**
+	 * Adds every patient to the index, breaking the names into trigrams on
+	 * several threads at once. Patients put into the index while it was being
+	 * loaded are kept as they were put, as they're newer.
+	 * 
+	 * @param ids of the patients
+	 * @param names of the patients, in the same order as their ids
+	 * @throws InterruptedException if interrupted while the names are broken up
+	 */
+	public void load(final List<Integer> ids, final List<String> names) throws InterruptedException {
+		
+		ExecutorService threads = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		ArrayList<Future<long[][]>> batches = new ArrayList<Future<long[][]>>();
+		
+		try {
+			
+			for (int start = 0 ; start < names.size() ; start += LOAD_BATCH){
+				
+				final int first = start;
+				final int last = Math.min(start + LOAD_BATCH, names.size());
+				
+				batches.add(threads.submit(new Callable<long[][]>() {
+					@Override
+					public long[][] call() {
+						
+						long[][] batch = new long[last - first][];
+						
+						for (int i = first ; i < last ; i++){
+							batch[i - first] = trigrams(names.get(i));
+						}
+						
+						return batch;
+						
+					}
+				}));
+				
+			}
+			
+			// adding the names in order, as each batch is broken up
+			int index = 0;
+			
+			for (Future<long[][]> batch : batches){
+				
+				long[][] grams = batch.get();
+				
+				synchronized (this){
+					for (long[] name : grams){
+						if (!slots.containsKey(ids.get(index))){
+							add(ids.get(index), name);
+						}
+						index++;
+					}
+				}
+				
+			}
+			
+		} catch (ExecutionException e){
+			throw new IllegalStateException("Failed to index patient names", e.getCause());
+		} finally {
+			threads.shutdownNow();
+		}
+		
+		synchronized (this){
+			loaded = true;
+		}
+		
+	}
+	
+	/**
+	 * Adds a patient to the index, or changes the name they're indexed under.
+	 * 
+	 * @param patientID of the patient
+	 * @param name of the patient
+	 */
+	public synchronized void put(int patientID, String name){
+		
+		remove(patientID);
+		add(patientID, trigrams(name));
+		
+	}
+	
+	/**
+	 * Removes a patient from the index.
+	 * 
+	 * @param patientID of the patient
+	 */
+	public synchronized void remove(int patientID){
+		
+		Integer slot = slots.remove(patientID);
+		
+		if (slot == null){
+			return;
+		}
+		
+		for (long gram : trigrams[slot]){
+			
+			Slots names = postings.get(gram);
+			names.remove(slot);
+			
+			if (names.size() == 0){
+				postings.remove(gram);
+			}
+			
+		}
+		
+		trigrams[slot] = null;
+		free.add(slot);
+		
+	}
+	
+	/**
+	 * Finds the patients whose names are most similar to the given name.
+	 * 
+	 * @param name searched for
+	 * @param limit the greatest number of patients returned
+	 * @return the ids of the patients, most similar first, an empty list if no name is similar enough
+	 */
+	public synchronized ArrayList<Integer> search(String name, int limit){
+		
+		final long[] grams = trigrams(name);
+		final int[] shared = new int[used];
+		
+		// counting the trigrams each name has in common with the name searched for
+		for (long gram : grams){
+			
+			Slots names = postings.get(gram);
+			
+			if (names != null){
+				for (int i = 0 ; i < names.size() ; i++){
+					shared[names.get(i)]++;
+				}
+			}
+			
+		}
+		
+		// keeping the most similar names, the least similar of them first
+		final double[] similarity = new double[used];
+		PriorityQueue<Integer> best = new PriorityQueue<Integer>(limit + 1, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer first, Integer second) {
+				
+				int order = Double.compare(similarity[first], similarity[second]);
+				
+				return order != 0 ? order : patients[second] - patients[first];
+				
+			}
+		});
+		
+		for (int slot = 0 ; slot < used ; slot++){
+			
+			if (shared[slot] == 0){
+				continue;
+			}
+			
+			similarity[slot] = (double) shared[slot] / (grams.length + trigrams[slot].length - shared[slot]);
+			
+			if (similarity[slot] >= MIN_SIMILARITY){
+				
+				best.add(slot);
+				
+				if (best.size() > limit){
+					best.poll();
+				}
+				
+			}
+			
+		}
+		
+		ArrayList<Integer> ids = new ArrayList<Integer>(best.size());
+		
+		while (!best.isEmpty()){
+			ids.add(0, patients[best.poll()]);
+		}
+		
+		return ids;
+		
+	}
+	
+	/**
+	 * Adds a patient to a free slot, listing the slot under each of the
+	 * trigrams of the patient's name.
+	 * 
+	 * @param patientID of the patient
+	 * @param grams the trigrams of the patient's name
+	 */
+	private void add(int patientID, long[] grams){
+		
+		int slot;
+		
+		if (free.size() > 0){
+			slot = free.get(free.size() - 1);
+			free.remove(slot);
+		}
+		else {
+			
+			if (used == patients.length){
+				patients = Arrays.copyOf(patients, Math.max(16, used * 2));
+				trigrams = Arrays.copyOf(trigrams, patients.length);
+			}
+			
+			slot = used++;
+			
+		}
+		
+		slots.put(patientID, slot);
+		patients[slot] = patientID;
+		trigrams[slot] = grams;
+		
+		for (long gram : grams){
+			
+			Slots names = postings.get(gram);
+			
+			if (names == null){
+				names = new Slots();
+				postings.put(gram, names);
+			}
+			
+			names.add(slot);
+			
+		}
+		
+	}
+	
+	
+	
+	// GETTERS
+	
+	public synchronized boolean isLoaded(){
+		return loaded;
+	}
+	
+	public synchronized int size(){
+		return slots.size();
+	}
+	
+	
+	/**
+	 * A growable list of slots, kept as an array of ints rather than a list
+	 * of Integers, as there's one for each trigram of every name.
+	 * 
+	 * @author Alan Sheehan - R00111909
+	 */
+	private static class Slots {
+		
+		private int[] slots = new int[4];
+		private int size = 0;
+		
+		
+		public void add(int slot){
+			
+			if (size == slots.length){
+				slots = Arrays.copyOf(slots, size * 2);
+			}
+			
+			slots[size++] = slot;
+			
+		}
+		
+		/**
+		 * Removes a slot by moving the last slot into its place, as the order
+		 * of the slots doesn't matter.
+		 * 
+		 * @param slot to be removed
+		 */
+		public void remove(int slot){
+			
+			for (int i = size - 1 ; i >= 0 ; i--){
+				if (slots[i] == slot){
+					slots[i] = slots[--size];
+					return;
+				}
+			}
+			
+		}
+		
+		public int get(int index){
+			return slots[index];
+		}
+		
+		public int size(){
+			return size;
+		}
+		
+	}
+	
+}
@@ -5,9 +5,13 @@ import java.awt.event.ActionListener;
 import java.util.ArrayList;
 
 import javax.swing.JTable;
+import javax.swing.Timer;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 
 import model.CustomAbstractTableModel;
 import model.Patient;
+import model.PatientRowSorter;
 import model.PatientTableModel;
 import model.Payment;
 import model.Procedure;
@@ -22,27 +26,32 @@ import dialog.PatientDialog;
  */
 public class PatientController {
 	
-	private Callback callback;
+	private PatientRepository patients;
 	private RootView view;
 	private PatientTableModel model;
 	private JTable patientTable;
 	
+	// the delay after the last key typed in the search box before the search is made, in milliseconds
+	private static final int SEARCH_DELAY = 250;
+	private Timer searchTimer;
+	
 	
 	/**
-	 * Assigns the passed in ArrayList of Patients to the data of the
-	 * {@link #model}.
+	 * Assigns the patients read through the repository to the data of the
+	 * {@link #model}, which the database sorts.
 	 * 
-	 * @param data the ArrayList of Patients
+	 * @param patients the repository every patient is read & written through
 	 * @param view the GUI
 	 */
-	public PatientController(Callback callback, ArrayList<Patient> data, RootView view){
+	PatientController(PatientRepository patients, RootView view){
 		
-		this.callback = callback;
+		this.patients = patients;
 		this.view = view;
-		this.model = new PatientTableModel(data);
+		this.model = new PatientTableModel(patients);
 		patientTable = view.getPatientTable();
 		
 		view.getPatientTable().setModel(this.model);
+		view.getPatientTable().setRowSorter(new PatientRowSorter(this.model));
 		
 		initListeners();
 		
@@ -50,12 +59,10 @@ public class PatientController {
 	
 	
 	/**
-	 * Sets the passed in data to the data of the model.
-	 * 
-	 * @param data to be set as the model
+	 * Reads the patients of the model again.
 	 */
-	public void setDataModel(ArrayList<Patient> data){
-		this.model.setData(data);
+	public void refresh(){
+		this.model.refresh();
 	}
 	
 	/**
@@ -77,12 +84,148 @@ public class PatientController {
 	}
 
 	
+	/**
+	 * Shows only the patients which match the text of the search box, 
+	 * selecting the patient which best matches it. If the text is the phone
+	 * number of a patient, or if no patient matches it but one has a similar
+	 * name, every patient is shown & that patient selected.
+	 */
+	private void search(){
+		
+		String text = view.getPatientSearchField().getText();
+		
+		if (PhoneIndex.isPhoneNumber(text)){
+			
+			ArrayList<Patient> callers = patients.findByPhone(text);
+			
+			if (!callers.isEmpty()){
+				showAll();
+				select(callers.get(0));
+				return;
+			}
+			
+		}
+		
+		Patient best = patients.search(text);
+		
+		if (best == null){
+			
+			// the name may have been misspelled
+			ArrayList<Patient> similar = patients.findSimilar(text, 1);
+			
+			if (!similar.isEmpty()){
+				showAll();
+				select(similar.get(0));
+				return;
+			}
+			
+		}
+		
+		model.refresh();
+		
+		if (best != null){
+			select(best);
+		}
+		
+	}
+	
+	/**
+	 * Selects the given patient's row, scrolling it into view.
+	 * 
+	 * @param patient to be selected
+	 */
+	private void select(Patient patient){
+		
+		int row = model.find(patient);
+		
+		if (row >= 0){
+			row = patientTable.convertRowIndexToView(row);
+			patientTable.setRowSelectionInterval(row, row);
+			patientTable.scrollRectToVisible(patientTable.getCellRect(row, 0, true));
+		}
+		
+	}
+	
+	/**
+	 * Clears the search box & shows every patient again, if a search has
+	 * been made.
+	 * 
+	 * @return true if the patients were read again, false if there was no search
+	 */
+	private boolean endSearch(){
+		
+		searchTimer.stop();
+		
+		if (!view.getPatientSearchField().getText().isEmpty()){
+			view.getPatientSearchField().setText("");
+			searchTimer.stop();
+		}
+		
+		return showAll();
+		
+	}
+	
+	/**
+	 * Shows every patient again, if a search has been made, leaving the text
+	 * of the search box as it is.
+	 * 
+	 * @return true if the patients were read again, false if there was no search
+	 */
+	private boolean showAll(){
+		
+		if (patients.isSearching()){
+			patients.search("");
+			model.refresh();
+			return true;
+		}
+		
+		return false;
+		
+	}
+	
+	
 	/**
 	 * Initializes listeners.
 	 */
 	private void initListeners(){
 		
 		
+		// searching once typing in the search box has paused
+		searchTimer = new Timer(SEARCH_DELAY, new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				search();
+			}
+		});
+		searchTimer.setRepeats(false);
+		
+		// searching at once on enter, as when looking up a caller
+		view.getPatientSearchField().addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				searchTimer.stop();
+				search();
+			}
+		});
+		
+		view.getPatientSearchField().getDocument().addDocumentListener(new DocumentListener() {
+			
+			@Override
+			public void insertUpdate(DocumentEvent e) {
+				searchTimer.restart();
+			}
+			
+			@Override
+			public void removeUpdate(DocumentEvent e) {
+				searchTimer.restart();
+			}
+			
+			@Override
+			public void changedUpdate(DocumentEvent e) {}
+			
+		});
+		
+		
 		// setting listener for addPatient button
 		view.getAddPatientButton().addActionListener(new ActionListener() {
 			@Override
@@ -98,16 +241,18 @@ public class PatientController {
 					String address = patient.getPatientAddress();
 					String phone = patient.getPatientPhone();
 					
-					DatabaseController db = DatabaseController.getInstance();
+					patient = patients.add(name, address, phone);
 					
-					if (db.insertPatient(name, address, phone)){
-						callback.refreshPatientList();
-						patient = db.mostRecentPatientEntry();
-						// selecting row of patient added
-						if (patient != null){
-							int row = patientTable.convertRowIndexToView(model.find(patient));
-							patientTable.setRowSelectionInterval(row, row);
+					if (patient != null){
+						
+						// the new patient may not match the search, so every patient is shown
+						if (!endSearch()){
+							model.add(patient);
 						}
+						
+						// selecting row of patient added
+						int row = patientTable.convertRowIndexToView(model.find(patient));
+						patientTable.setRowSelectionInterval(row, row);
 					}
 					
 				}
@@ -131,15 +276,21 @@ public class PatientController {
 				
 				patient = dialog.showDialog(patient);
 				
-				DatabaseController db = DatabaseController.getInstance();
-				
-				if (db.updatePatient(patient)){
-					callback.refreshPatientList();
-					// selecting the row of patient edited
-					row = patientTable.convertRowIndexToView(model.find(patient));
-					patientTable.setRowSelectionInterval(row, row);
+				if (patients.update(patient) != null){
+					// the edited patient may no longer match the search, so every patient is shown
+					if (!endSearch()){
+						model.set(row, patient);
+					}
+				}
+				else {
+					// the dialog edits the patient in place, so its old details are shown again
+					model.fireTableRowsUpdated(row, row);
 				}
 				
+				// selecting the row of patient edited
+				row = patientTable.convertRowIndexToView(model.find(patient));
+				patientTable.setRowSelectionInterval(row, row);
+				
 			}
 		});
 		
@@ -150,11 +301,11 @@ public class PatientController {
 			@Override
 			public void actionPerformed(ActionEvent e) {
 				
-				Patient patient = model.get(patientTable.convertRowIndexToModel(patientTable.getSelectedRow()));
+				int row = patientTable.convertRowIndexToModel(patientTable.getSelectedRow());
 				
-				DatabaseController db = DatabaseController.getInstance();
-				db.deletePatient(patient);
-				callback.refreshPatientList();
+				if (patients.remove(model.get(row))){
+					model.remove(row);
+				}
 				
 				// clearing procedure & payment tables
 				((CustomAbstractTableModel<Procedure>)view.getProcedureTable().getModel()).clear();
@@ -169,21 +320,4 @@ public class PatientController {
 		
 	}
 	
-	
-	/**
-	 * Allows an instance of the patient controller class to communicate with
-	 * the {@link MasterController}.
-	 * 
-	 * @author Alan Sheehan - R00111909
-	 */
-	public interface Callback {
-		
-		/**
-		 * Refreshes the patient list following any changes.
-		 */
-		void refreshPatientList();
-		
-	}
-	
-	
 }
@@ -0,0 +1,198 @@
+package controller;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import model.Payment;
+
+
+/**
+ * Holds the {@link PatientDetails} of the patients most recently read, keyed
+ * by patient id. The cache is bounded by the number of procedures & payments
+ * held rather than the number of patients, & discards the least recently
+ * used patients first once it's full.
+ * 
+ * Every write which changes a patient's details invalidates them. A write
+ * also advances the cache's version, so that details read before the write
+ * but put afterwards are never held.
+ * 
+ * @author Alan Sheehan - R00111909
+ */
+class PatientDetailCache {
+	
+	private int capacity;
+	private int size = 0;
+	private int version = 0;
+	
+	private int hits = 0;
+	private int misses = 0;
+	private int evictions = 0;
+	
+	// details by patient id, in order of least recently used
+	private LinkedHashMap<Integer, PatientDetails> details = new LinkedHashMap<Integer, PatientDetails>(16, 0.75f, true);
+	
+	
+	/**
+	 * Constructor which takes in the size of the cache.
+	 * 
+	 * @param capacity the greatest number of procedures & payments held
+	 */
+	public PatientDetailCache(int capacity){
+		this.capacity = capacity;
+	}
+	
+	
+	/**
+	 * Returns the cached details of the given patient, counting a hit or miss.
+	 * 
+	 * @param patientID of the patient
+	 * @return the patient's details, null if they aren't cached
+	 */
+	public synchronized PatientDetails get(int patientID){
+		
+		PatientDetails cached = details.get(patientID);
+		
+		if (cached == null){
+			misses++;
+		}
+		else {
+			hits++;
+		}
+		
+		return cached;
+		
+	}
+	
+	/**
+	 * Returns whether the details of the given patient are cached, without
+	 * counting a hit or miss.
+	 * 
+	 * @param patientID of the patient
+	 * @return true if the patient's details are cached, false otherwise
+	 */
+	public synchronized boolean contains(int patientID){
+		return details.containsKey(patientID);
+	}
+	
+	/**
+	 * Caches the given details, unless there has been a write since they
+	 * were read.
+	 * 
+	 * @param read the details read
+	 * @param readVersion the {@link #getVersion() version} of the cache before the details were read
+	 */
+	public synchronized void put(PatientDetails read, int readVersion){
+		
+		if (readVersion != version){
+			return;
+		}
+		
+		remove(read.getPatientID());
+		
+		details.put(read.getPatientID(), read);
+		size += weigh(read);
+		
+		// discarding the least recently used patients, always keeping the one just read
+		Iterator<PatientDetails> eldest = details.values().iterator();
+		
+		while (size > capacity && details.size() > 1){
+			size -= weigh(eldest.next());
+			eldest.remove();
+			evictions++;
+		}
+		
+	}
+	
+	
+	/**
+	 * Discards the details of the given patient, following a write to them.
+	 * 
+	 * @param patientID of the patient
+	 */
+	public synchronized void invalidate(int patientID){
+		
+		version++;
+		remove(patientID);
+		
+	}
+	
+	/**
+	 * Discards the details of the patient who made the given payment,
+	 * following a write to it.
+	 * 
+	 * @param paymentID of the payment
+	 */
+	public synchronized void invalidatePayment(int paymentID){
+		
+		version++;
+		
+		for (PatientDetails cached : details.values()){
+			for (Payment payment : cached.getPayments()){
+				if (payment.getPaymentNo() == paymentID){
+					remove(cached.getPatientID());
+					return;
+				}
+			}
+		}
+		
+	}
+	
+	/**
+	 * Discards every patient's details, following a write which may affect
+	 * many patients.
+	 */
+	public synchronized void clear(){
+		
+		version++;
+		details.clear();
+		size = 0;
+		
+	}
+	
+	
+	/**
+	 * Removes the details of the given patient, if cached.
+	 * 
+	 * @param patientID of the patient
+	 */
+	private void remove(int patientID){
+		
+		PatientDetails removed = details.remove(patientID);
+		
+		if (removed != null){
+			size -= weigh(removed);
+		}
+		
+	}
+	
+	/**
+	 * Weighs the given details by the number of rows they hold.
+	 * 
+	 * @param cached the details
+	 * @return the weight of the details, at least 1
+	 */
+	private static int weigh(PatientDetails cached){
+		return 1 + cached.getProcedures().size() + cached.getPayments().size();
+	}
+	
+	
+	
+	// GETTERS
+	
+	public synchronized int getVersion(){
+		return version;
+	}
+	
+	public synchronized int getHits(){
+		return hits;
+	}
+	
+	public synchronized int getMisses(){
+		return misses;
+	}
+	
+	public synchronized int getEvictions(){
+		return evictions;
+	}
+	
+}
@@ -0,0 +1,53 @@
+package controller;
+
+import java.util.ArrayList;
+
+import model.Payment;
+import model.Procedure;
+
+
+/**
+ * The procedures & payments of a single patient, as read together when the
+ * patient is selected.
+ * 
+ * @author Alan Sheehan - R00111909
+ */
+class PatientDetails {
+	
+	private int patientID;
+	private ArrayList<Procedure> procedures;
+	private ArrayList<Payment> payments;
+	
+	
+	/**
+	 * Constructor which takes in the details read for a patient.
+	 * 
+	 * @param patientID of the patient
+	 * @param procedures the patient is scheduled for
+	 * @param payments the patient has made
+	 */
+	public PatientDetails(int patientID, ArrayList<Procedure> procedures, ArrayList<Payment> payments){
+		
+		this.patientID = patientID;
+		this.procedures = procedures;
+		this.payments = payments;
+		
+	}
+	
+	
+	
+	// GETTERS
+	
+	public int getPatientID(){
+		return patientID;
+	}
+	
+	public ArrayList<Procedure> getProcedures(){
+		return procedures;
+	}
+	
+	public ArrayList<Payment> getPayments(){
+		return payments;
+	}
+	
+}
@@ -0,0 +1,173 @@
+package controller;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import model.Patient;
+
+
+/**
+ * Reads the procedures & payments of the patients either side of the one
+ * selected into the {@link DatabaseController}'s cache, on a low priority
+ * background thread, so that moving the selection up or down finds the
+ * details already read.
+ * 
+ * Only the neighbours of the latest selection are ever read - a selection
+ * abandons any neighbours of an earlier one still waiting to be read.
+ * 
+ * @author Alan Sheehan - R00111909
+ */
+class PatientPrefetcher {
+	
+	// the greatest number of prefetched patients remembered, for counting hits
+	private static final int PREFETCHED_PATIENTS = 64;
+	
+	private DatabaseController db;
+	
+	// a single thread, with room for a single waiting task - the oldest is discarded
+	private ExecutorService executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+			new ArrayBlockingQueue<Runnable>(1), new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable task) {
+					Thread thread = new Thread(task, "Patient prefetcher");
+					thread.setDaemon(true);
+					thread.setPriority(Thread.MIN_PRIORITY);
+					return thread;
+				}
+			}, new ThreadPoolExecutor.DiscardOldestPolicy());
+	
+	// the number of the latest selection, checked before each neighbour is read
+	private volatile int generation = 0;
+	
+	// ids of the patients prefetched, in the order they were read
+	private LinkedHashSet<Integer> prefetched = new LinkedHashSet<Integer>();
+	
+	private int prefetches = 0;
+	private int selections = 0;
+	private int hits = 0;
+	
+	
+	/**
+	 * Constructor which takes in the database the details are read from.
+	 * 
+	 * @param db the details are read from & cached by
+	 */
+	public PatientPrefetcher(DatabaseController db){
+		this.db = db;
+	}
+	
+	
+	/**
+	 * Records the selection of a patient, counting a hit if their details
+	 * were prefetched & are still cached. Must be called before the patient's
+	 * details are read.
+	 * 
+	 * @param patientID of the patient selected
+	 */
+	public synchronized void selected(int patientID){
+		
+		selections++;
+		
+		if (prefetched.remove(patientID) && db.isPatientDetailsCached(patientID)){
+			hits++;
+		}
+		
+	}
+	
+	/**
+	 * Reads the details of the given patients in the background, unless
+	 * they're already cached. Any patients passed in earlier & not yet read
+	 * are abandoned.
+	 * 
+	 * @param neighbours the patients either side of the selection, which may be null
+	 */
+	public void prefetch(final Patient... neighbours){
+		
+		final int current = ++generation;
+		
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				
+				for (Patient patient : neighbours){
+					
+					if (generation != current){
+						return;
+					}
+					
+					if (patient != null && !db.isPatientDetailsCached(patient.getPatientNo())
+							&& db.readPatientDetails(patient.getPatientNo()) != null){
+						record(patient.getPatientNo());
+					}
+					
+				}
+				
+			}
+		});
+		
+	}
+	
+	/**
+	 * Abandons any patients waiting to be read & stops the background thread.
+	 */
+	public void shutdown(){
+		
+		generation++;
+		executor.shutdownNow();
+		
+	}
+	
+	/**
+	 * Records a patient whose details have been prefetched.
+	 * 
+	 * @param patientID of the patient
+	 */
+	private synchronized void record(int patientID){
+		
+		prefetches++;
+		prefetched.add(patientID);
+		
+		Iterator<Integer> eldest = prefetched.iterator();
+		
+		while (prefetched.size() > PREFETCHED_PATIENTS){
+			eldest.next();
+			eldest.remove();
+		}
+		
+	}
+	
+	
+	@Override
+	public synchronized String toString() {
+		
+		return String.format("Prefetch: %d patients read, %d of %d selections hit (%.1f%%)", prefetches, hits, selections,
+				getHitRate() * 100);
+		
+	}
+	
+	
+	
+	// GETTERS
+	
+	public synchronized int getPrefetches(){
+		return prefetches;
+	}
+	
+	public synchronized int getSelections(){
+		return selections;
+	}
+	
+	public synchronized int getHits(){
+		return hits;
+	}
+	
+	public synchronized double getHitRate(){
+		return selections == 0 ? 0 : (double) hits / selections;
+	}
+	
+}
@@ -0,0 +1,168 @@
+package controller;
+
+import java.util.ArrayList;
+
+import model.Patient;
+import model.PatientTableModel;
+
+
+/**
+ * The patients, as read & changed by the patient table. Each change is
+ * written to the database & the changed patient handed back, so that a
+ * single edit only ever changes one row of the table. The patients are read
+ * a block at a time, for the rows of the table being displayed, so they are
+ * never all held in memory. While a search is made, only the patients which
+ * match it are read.
+ * 
+ * @author Alan Sheehan - R00111909
+ */
+class PatientRepository implements PatientTableModel.Source {
+	
+	private DatabaseController db;
+	
+	// the text every patient read must match, null for every patient
+	private String search;
+	
+	
+	/**
+	 * Constructor which takes in the database the patients are kept in.
+	 * 
+	 * @param db the patients are read from & written to
+	 */
+	public PatientRepository(DatabaseController db){
+		this.db = db;
+	}
+	
+	
+	/**
+	 * Adds a new patient to the database.
+	 * 
+	 * @param name of the patient
+	 * @param address of the patient
+	 * @param phone of the patient
+	 * @return the new patient, with the id given by the database, null if the patient couldn't be added
+	 */
+	public Patient add(String name, String address, String phone){
+		return db.createPatient(name, address, phone);
+	}
+	
+	/**
+	 * Writes the given patient's details to the database. If the write fails,
+	 * the patient's details are restored from the database.
+	 * 
+	 * @param patient whose details have changed
+	 * @return the updated patient, null if it couldn't be updated
+	 */
+	public Patient update(Patient patient){
+		
+		if (db.updatePatient(patient)){
+			return patient;
+		}
+		
+		Patient stored = db.getPatient(patient.getPatientNo());
+		
+		if (stored != null){
+			patient.setPatientName(stored.getPatientName());
+			patient.setPatientAddress(stored.getPatientAddress());
+			patient.setPatientPhone(stored.getPatientPhone());
+		}
+		
+		return null;
+		
+	}
+	
+	/**
+	 * Deletes the given patient from the database.
+	 * 
+	 * @param patient to be deleted
+	 * @return true if the patient was deleted, false otherwise
+	 */
+	public boolean remove(Patient patient){
+		return db.deletePatient(patient);
+	}
+	
+	/**
+	 * Restricts the patients read to those matching the given text, until
+	 * the next search. Searching for empty text ends the search.
+	 * 
+	 * @param text searched for
+	 * @return the patient which best matches the text, null if none match
+	 */
+	public Patient search(String text){
+		
+		search = text.trim().isEmpty() ? null : text;
+		
+		ArrayList<Integer> best = db.searchPatients(search, 1);
+		
+		return best.isEmpty() ? null : db.getPatient(best.get(0));
+		
+	}
+	
+	/**
+	 * Finds the patients with the given phone number.
+	 * 
+	 * @param phone number of the caller, as written
+	 * @return the patients with the number, an empty list if there are none
+	 */
+	public ArrayList<Patient> findByPhone(String phone){
+		return db.findPatientsByPhone(phone);
+	}
+	
+	/**
+	 * Finds the patients whose names are most like the given name, allowing
+	 * for misspellings.
+	 * 
+	 * @param name searched for
+	 * @param limit the greatest number of patients returned
+	 * @return the patients, most similar first, an empty list if none are similar enough
+	 */
+	public ArrayList<Patient> findSimilar(String name, int limit){
+		return db.findPatientsByName(name, limit);
+	}
+	
+	/**
+	 * Returns whether the patients read are restricted by a search.
+	 * 
+	 * @return true if a search has been made, false otherwise
+	 */
+	public boolean isSearching(){
+		return search != null;
+	}
+	
+	/**
+	 * Reads the given patient's balance again, after a change to their
+	 * procedures or payments.
+	 * 
+	 * @param patient whose balance has changed
+	 * @return the patient, with their current balance
+	 */
+	public Patient refreshBalance(Patient patient){
+		
+		patient.setBalance(db.readBalance(patient.getPatientNo()));
+		
+		return patient;
+		
+	}
+	
+	
+	@Override
+	public int countPatients() {
+		return db.countPatients(search);
+	}
+	
+	@Override
+	public ArrayList<Patient> readPatients(int column, boolean ascending, Patient after, int count) {
+		return db.readPatientPage(column, ascending, search, after, count);
+	}
+	
+	@Override
+	public ArrayList<Patient> readPatients(int column, boolean ascending, int first, int count) {
+		return db.readPatientPage(column, ascending, search, first, count);
+	}
+	
+	@Override
+	public int indexOf(Patient patient, int column, boolean ascending) {
+		return db.indexOfPatient(patient, column, ascending, search);
+	}
+	
+}
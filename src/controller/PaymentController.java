@@ -3,6 +3,7 @@ package controller;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.util.ArrayList;
+import java.util.List;
 
 import javax.swing.JTable;
 
@@ -75,6 +76,30 @@ public class PaymentController {
 		model.remove(index);
 	}
 	
+	/**
+	 * Inserts the given payments for a patient in one batch, such as the 
+	 * payments read from a card terminal's end-of-day file.
+	 * 
+	 * @param patientID of the patient making the payments
+	 * @param payments to be inserted
+	 * @return true if every payment was inserted, false otherwise
+	 */
+	public boolean addPayments(int patientID, List<Payment> payments){
+		
+		DatabaseController db = DatabaseController.getInstance();
+		
+		for (boolean inserted : db.insertPayments(patientID, payments)){
+			if (!inserted){
+				return false;
+			}
+		}
+		
+		callback.refreshPatientPaymentList();
+		
+		return true;
+		
+	}
+	
 	/**
 	 * Initializes listeners.
 	 */
@@ -97,16 +122,10 @@ public class PaymentController {
 					int patientRow = patients.convertRowIndexToModel(patients.getSelectedRow());
 					Patient patient = ((PatientTableModel) patients.getModel()).get(patientRow);
 					
-					int patientID = patient.getPatientNo();
-					
-					double amount = payment.getPaymentAmount();
-					boolean status = payment.getPaymentStatus();
+					ArrayList<Payment> payments = new ArrayList<Payment>();
+					payments.add(payment);
 					
-					DatabaseController db = DatabaseController.getInstance();
-					
-					if (db.insertPayment(patientID, amount, status)){
-						callback.refreshPatientPaymentList();
-					}
+					addPayments(patient.getPatientNo(), payments);
 					
 				}
 				
@@ -126,12 +145,14 @@ public class PaymentController {
 				
 				Payment payment = model.get(row);
 				
-				payment = dialog.showDialog(payment);
+				// the dialog edits a copy, so the row keeps the saved payment until the update succeeds
+				Payment edited = dialog.showDialog(new Payment(payment.getPaymentNo(), payment.getPaymentAmount(), 
+						payment.getPaymentStatus(), payment.getPaymentDate()));
 				
 				
 				DatabaseController db = DatabaseController.getInstance();
 				
-				if (db.updatePayment(payment)){
+				if (db.updatePayment(edited)){
 					callback.refreshPatientPaymentList();
 				}
 				
@@ -173,5 +194,5 @@ public class PaymentController {
 		void refreshPatientPaymentList();
 		
 	}
-
+	
 }
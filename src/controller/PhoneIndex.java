@@ -0,0 +1,158 @@
+package controller;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+
+/**
+ * An in-memory index of the patients' phone numbers, for finding the patient
+ * calling without reading the database. Phone numbers are compared by their
+ * digits alone, & by no more than their last {@link #TAIL_DIGITS} digits, so
+ * that a number matches however it's written, with or without a country
+ * code or trunk prefix.
+ * 
+ * Only additions are written to the index - a patient whose number has
+ * changed or who has been deleted is left under their old number, & must be
+ * checked & {@link #remove(String, int) removed} by whoever looks them up.
+ * 
+ * @author Alan Sheehan - R00111909
+ */
+class PhoneIndex {
+	
+	// the digits of a number within a country, without a trunk prefix
+	public static final int TAIL_DIGITS = 9;
+	
+	// the fewest digits text must have to be taken for a phone number
+	private static final int MIN_DIGITS = 7;
+	
+	private boolean loaded = false;
+	
+	// patient ids by the tails of their phone numbers
+	private HashMap<String, ArrayList<Integer>> patients = new HashMap<String, ArrayList<Integer>>();
+	
+	
+	/**
+	 * Strips everything but the digits from the given phone number.
+	 * 
+	 * @param phone number as written
+	 * @return the digits of the number, empty if it has none
+	 */
+	public static String digits(String phone){
+		
+		StringBuilder digits = new StringBuilder(phone.length());
+		
+		for (int i = 0 ; i < phone.length() ; i++){
+			if (phone.charAt(i) >= '0' && phone.charAt(i) <= '9'){
+				digits.append(phone.charAt(i));
+			}
+		}
+		
+		return digits.toString();
+		
+	}
+	
+	/**
+	 * Returns whether the given text is written as a phone number - only
+	 * digits, spaces & the symbols used to write numbers, with enough digits
+	 * to be a whole number.
+	 * 
+	 * @param text to check
+	 * @return true if the text is a phone number, false otherwise
+	 */
+	public static boolean isPhoneNumber(String text){
+		return text.matches("[0-9+()./ -]+") && digits(text).length() >= MIN_DIGITS;
+	}
+	
+	/**
+	 * Returns the last {@link #TAIL_DIGITS} digits of the given phone number,
+	 * which phone numbers are matched by.
+	 * 
+	 * @param phone number as written
+	 * @return the last digits of the number, all of them if it has fewer
+	 */
+	public static String tail(String phone){
+		
+		String digits = digits(phone);
+		
+		return digits.length() > TAIL_DIGITS ? digits.substring(digits.length() - TAIL_DIGITS) : digits;
+		
+	}
+	
+	
+	/**
+	 * Adds a patient to the index under the given number.
+	 * 
+	 * @param tail of the patient's phone number, see {@link #tail(String)}
+	 * @param patientID of the patient
+	 */
+	public synchronized void add(String tail, int patientID){
+		
+		ArrayList<Integer> ids = patients.get(tail);
+		
+		if (ids == null){
+			ids = new ArrayList<Integer>(1);
+			patients.put(tail, ids);
+		}
+		
+		if (!ids.contains(patientID)){
+			ids.add(patientID);
+		}
+		
+	}
+	
+	/**
+	 * Removes a patient found to no longer have the given number.
+	 * 
+	 * @param tail of the number the patient is indexed under
+	 * @param patientID of the patient
+	 */
+	public synchronized void remove(String tail, int patientID){
+		
+		ArrayList<Integer> ids = patients.get(tail);
+		
+		if (ids != null){
+			
+			ids.remove(Integer.valueOf(patientID));
+			
+			if (ids.isEmpty()){
+				patients.remove(tail);
+			}
+			
+		}
+		
+	}
+	
+	/**
+	 * Returns the patients indexed under the given number.
+	 * 
+	 * @param tail of the phone number, see {@link #tail(String)}
+	 * @return the ids of the patients, an empty list if there are none
+	 */
+	public synchronized ArrayList<Integer> get(String tail){
+		
+		ArrayList<Integer> ids = patients.get(tail);
+		
+		return ids == null ? new ArrayList<Integer>() : new ArrayList<Integer>(ids);
+		
+	}
+	
+	
+	
+	// SETTERS & GETTERS
+	
+	public synchronized boolean isLoaded(){
+		return loaded;
+	}
+	
+	/**
+	 * Marks the index as holding every patient, once they've all been added.
+	 */
+	public synchronized void setLoaded(){
+		loaded = true;
+	}
+	
+	public synchronized int size(){
+		return patients.size();
+	}
+	
+}
@@ -0,0 +1,116 @@
+package controller;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+
+/**
+ * A connection held by the {@link ConnectionPool}, along with its statement
+ * cache & the state of the thread currently borrowing it.
+ * 
+ * @author Alan Sheehan - R00111909
+ */
+class PooledConnection {
+	
+	private Connection connection;
+	private StatementCache statements;
+	private boolean readOnly;
+	
+	// state of the current borrower
+	private int depth = 0;
+	private boolean inTransaction = false;
+	private boolean rollbackOnly = false;
+	
+	
+	/**
+	 * Wraps the given connection.
+	 * 
+	 * @param connection to be pooled
+	 * @param readOnly whether the connection can only be read from
+	 */
+	public PooledConnection(Connection connection, boolean readOnly){
+		
+		this.connection = connection;
+		this.statements = new StatementCache(connection);
+		this.readOnly = readOnly;
+		
+	}
+	
+	
+	/**
+	 * Closes the connection & every statement prepared on it.
+	 */
+	public void close(){
+		
+		statements.close();
+		
+		try {
+			connection.close();
+		} catch (SQLException e){
+			// connection is being discarded either way
+		}
+		
+	}
+	
+	
+	/**
+	 * Called each time the borrowing thread uses the connection again.
+	 */
+	public void enter(){
+		depth++;
+	}
+	
+	/**
+	 * Called each time the borrowing thread finishes a use of the connection.
+	 * 
+	 * @return true if the thread has finished with the connection entirely
+	 */
+	public boolean exit(){
+		
+		depth--;
+		
+		if (depth == 0){
+			inTransaction = false;
+			rollbackOnly = false;
+			return true;
+		}
+		
+		return false;
+		
+	}
+	
+	
+	
+	// SETTERS & GETTERS
+	
+	public Connection getConnection(){
+		return connection;
+	}
+	
+	public StatementCache getStatements(){
+		return statements;
+	}
+	
+	public boolean isReadOnly(){
+		return readOnly;
+	}
+	
+	
+	public boolean isInTransaction(){
+		return inTransaction;
+	}
+	
+	public void setInTransaction(boolean inTransaction){
+		this.inTransaction = inTransaction;
+	}
+	
+	
+	public boolean isRollbackOnly(){
+		return rollbackOnly;
+	}
+	
+	public void setRollbackOnly(boolean rollbackOnly){
+		this.rollbackOnly = rollbackOnly;
+	}
+	
+}
@@ -4,6 +4,7 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.util.ArrayList;
 
+import javax.swing.JOptionPane;
 import javax.swing.JTable;
 
 import model.Patient;
@@ -89,6 +90,42 @@ public class ProcedureController {
 	}
 	
 	
+	/**
+	 * Schedules the given patient for each of the given procedures in one
+	 * batch, reporting any the patient was already scheduled for.
+	 * 
+	 * @param patient being scheduled
+	 * @param procedures to schedule
+	 */
+	private void addProcedures(Patient patient, ArrayList<Procedure> procedures){
+		
+		int[] procedureIDs = new int[procedures.size()];
+		
+		for (int i = 0 ; i < procedureIDs.length ; i++){
+			procedureIDs[i] = procedures.get(i).getProcedureNo();
+		}
+		
+		DatabaseController db = DatabaseController.getInstance();
+		boolean[] added = db.addProceduresToPatient(patient.getPatientNo(), procedureIDs);
+		
+		String skipped = "";
+		
+		for (int i = 0 ; i < added.length ; i++){
+			if (!added[i]){
+				skipped += "\n" + procedures.get(i).getProcedureName();
+			}
+		}
+		
+		callback.refreshPatientProcedureList();
+		
+		if (!skipped.isEmpty()){
+			JOptionPane.showMessageDialog(view, "The patient was not scheduled for:" + skipped, 
+					"Error", JOptionPane.ERROR_MESSAGE);
+		}
+		
+	}
+	
+	
 	/**
 	 * Initializes listeners.
 	 */
@@ -102,21 +139,10 @@ public class ProcedureController {
 				
 				ProcedureDialog dialog = new ProcedureDialog(view, "Add Procedure");
 				
-				Procedure procedure = dialog.showDialog();
-				
-				if (procedure != null){
-					
-					Patient patient = getCurrentPatient();
-					
-					int patientID = patient.getPatientNo();
-					int procedureID = procedure.getProcedureNo();
-					
-					DatabaseController db = DatabaseController.getInstance();
-					
-					if (db.addProcedureToPatient(patientID, procedureID)){
-						callback.refreshPatientProcedureList();
-					}
-					
+				ArrayList<Procedure> plan = dialog.showPlanDialog();
+				
+				if (!plan.isEmpty()){
+					addProcedures(getCurrentPatient(), plan);
 				}
 				
 			}
@@ -127,7 +153,7 @@ public class ProcedureController {
 		view.getEditProcedureButton().addActionListener(new ActionListener() {
 			@Override
 			public void actionPerformed(ActionEvent e) {
-
+				
 				ProcedureDialog dialog = new ProcedureDialog(view, "Edit Procedure");
 				
 				int row = procedureTable.convertRowIndexToModel(procedureTable.getSelectedRow());
@@ -190,5 +216,5 @@ public class ProcedureController {
 		void refreshPatientProcedureList();
 		
 	}
-
+	
 }
@@ -2,15 +2,8 @@ package controller;
 
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Calendar;
-import java.util.Collections;
-import java.util.GregorianCalendar;
-
-import javax.swing.JOptionPane;
-import javax.swing.text.BadLocationException;
 
+import model.Money;
 import model.Patient;
 import model.Payment;
 import model.Procedure;
@@ -45,210 +38,192 @@ public class ReportController {
 	
 	/**
 	 * Generates a report containing all Patients in the system.
-	 * Displays the report with a {@link dialog.ReportDialog}.
+	 * Displays the report with a {@link dialog.ReportDialog}, which reads
+	 * each page of patients from the database as it's displayed.
 	 */
 	public void generateFullReport (){
 		
+		final DatabaseController db = DatabaseController.getInstance();
+		
 		ReportDialog dialog = new ReportDialog();
 		
 		dialog.setTitle("Complete Report");
 		
-		
-		ArrayList<Patient> patientList = DatabaseController.getInstance().readPatientList();
-		Collections.sort(patientList);
-		
-		for (Patient p : patientList){
+		dialog.showDialog(new ReportDialog.PageSource() {
 			
-			String patient = patientToHTML(p);
+			@Override
+			public int getPatientCount() {
+				return db.countPatients();
+			}
 			
-			try {
+			@Override
+			public String getPage(int first, int count) {
 				
-				dialog.appendTo(patient);
+				final StringBuilder html = new StringBuilder();
 				
-			} catch (BadLocationException e){
+				db.streamPatients(new DatabaseController.PatientHandler() {
+					@Override
+					public boolean handle(Patient patient) {
+						patientToHTML(patient, html);
+						return true;
+					}
+				}, first, count);
 				
-				JOptionPane.showMessageDialog(null, "Error in adding the following patient to the report:\n" + p.toString(), 
-						"Critical Error", JOptionPane.ERROR_MESSAGE);
-				return;
+				return html.toString();
 				
-			} catch (IOException e){
+			}
+			
+			@Override
+			public int indexOf(String patient) {
 				
-				JOptionPane.showMessageDialog(null, "Error in adding the following patient to the report:\n" + p.toString(), 
-						"Critical Error", JOptionPane.ERROR_MESSAGE);
-				return;
+				try {
+					return db.indexOfPatient(Integer.parseInt(patient));
+				} catch (NumberFormatException e){
+					return db.indexOfPatient(patient);
+				}
 				
 			}
 			
-		}
-		
-		dialog.showDialog();
+		});
 		
 	}
 	
 	
 	/**
-	 * Generates a report of all Patients who haven't made a payment in 6 months.
-	 * Displays the report with a {@link dialog.ReportDialog}.
+	 * Generates a report of all Patients who owe money & haven't made a 
+	 * payment in 6 months, in order of the amount owed. Displays the report
+	 * with a {@link dialog.ReportDialog}, which reads each page of overdue
+	 * patients from the database as it's displayed.
 	 */
 	public void generateOverdueReport (){
 		
+		final DatabaseController db = DatabaseController.getInstance();
+		
 		ReportDialog dialog = new ReportDialog();
 		
 		dialog.setTitle("Overdue Report");
 		
-		Calendar currentDate = new GregorianCalendar();
-		
-		Calendar paymentDate = new GregorianCalendar();
-		
-		
-		ArrayList<Patient> patientList = DatabaseController.getInstance().readPatientList();
-		Collections.sort(patientList, new Patient.CompareByAmountOwed());
-		
-		
-		for (int i = 0 ; i < patientList.size() ; i++){
-			
-			Patient p = patientList.get(i);
+		dialog.showDialog(new ReportDialog.PageSource() {
 			
-			// skips the patient if he doesn't owe money or no payments have been made
-			if (p.getAmountOwed() <= 0 || p.getPatientPaymentList().isEmpty()){
-				i++;
+			@Override
+			public int getPatientCount() {
+				return db.countOverduePatients();
 			}
-			else {
-				
-				// creating deep copy to avoid sorting original data
-				ArrayList<Payment> payments = p.getPatientPaymentList();
-				payments.sort(new Payment.SortByDate());
-				
-				
-				// getting most recent payment			
-				Payment payment = payments.get(payments.size() - 1);
-				paymentDate.setTime(payment.getPaymentDate());
+			
+			@Override
+			public String getPage(int first, int count) {
 				
+				final StringBuilder html = new StringBuilder();
 				
-				// calculating difference in months between last payment and current time in months
-				int differenceYears = currentDate.get(Calendar.YEAR) - paymentDate.get(Calendar.YEAR);
-				int differenceMonths = currentDate.get(Calendar.MONTH) - paymentDate.get(Calendar.MONTH);
+				db.streamOverduePatients(new DatabaseController.PatientHandler() {
+					@Override
+					public boolean handle(Patient patient) {
+						patientToHTML(patient, html);
+						return true;
+					}
+				}, first, count);
 				
-				int difference = differenceMonths + (12 * differenceYears);
+				return html.toString();
 				
-				// adds the patient to the report if the patient hasn't made a payment in 6 months
-				if (difference > 6){
-					
-					String patient = patientToHTML(p);
+			}
+			
+			@Override
+			public int indexOf(String patient) {
 				
-					try {
-						
-						dialog.appendTo(patient);
-						
-					} catch (BadLocationException e){
-						
-						JOptionPane.showMessageDialog(null, "Error in adding the following patient to the report:\n" + p.toString(), 
-								"Critical Error", JOptionPane.ERROR_MESSAGE);
-						return;
-						
-					} catch (IOException e){
-						
-						JOptionPane.showMessageDialog(null, "Error in adding the following patient to the report:\n" + p.toString(), 
-								"Critical Error", JOptionPane.ERROR_MESSAGE);
-						return;
-							
-					}
-						
+				try {
+					return db.indexOfOverduePatient(Integer.parseInt(patient));
+				} catch (NumberFormatException e){
+					return db.indexOfOverduePatient(patient);
 				}
-			}
 				
-		}
-		
-		dialog.showDialog();
+			}
+			
+		});
 		
 	}
 	
 	
 	/**
 	 * Converts an object of type {@link model.Patient} into HTML
-	 * text representing the Patient.
+	 * text representing the Patient, appended to the given report.
 	 * 
 	 * @param patient to be converted to HTML
-	 * @return the HTML representation of the patient
+	 * @param html the report the patient is appended to
 	 */
-	private String patientToHTML (Patient patient){
-		
-		String html = "";
+	private void patientToHTML (Patient patient, StringBuilder html){
 		
 		// adding basic patient information
-		html += "<h2>" + patient.getPatientName() + "</h2>";
-		html += "<ul>";
-		html += "<li><b>ID:</b> " + patient.getPatientNo() + "</li>";
-		html += "<li><b>Address:</b> " + patient.getPatientAddress() + "</li>";
-		html += "<li><b>Phone:</b> " + patient.getPatientPhone() + "</li>";
-		html += "</ul>";
+		html.append("<h2>").append(patient.getPatientName()).append("</h2>");
+		html.append("<ul>");
+		html.append("<li><b>ID:</b> ").append(patient.getPatientNo()).append("</li>");
+		html.append("<li><b>Address:</b> ").append(patient.getPatientAddress()).append("</li>");
+		html.append("<li><b>Phone:</b> ").append(patient.getPatientPhone()).append("</li>");
+		html.append("</ul>");
 		
 		
 		
 		// adding patient procedures in table form
-		html += "<h3>Procedures</h3>";
-		html += "<table width = \"100%\">";
-		html += "<tr>";
-		html += "<th>ID</th>";
-		html += "<th>Name</th>";
-		html += "<th>Cost</th>";
-		html += "</tr>";
+		html.append("<h3>Procedures</h3>");
+		html.append("<table width = \"100%\">");
+		html.append("<tr>");
+		html.append("<th>ID</th>");
+		html.append("<th>Name</th>");
+		html.append("<th>Cost</th>");
+		html.append("</tr>");
 		
 		if (patient.getPatientProcedureList().isEmpty()){
-			html += "<tr>";
-			html += "<td> N/A </td>";
-			html += "<td> N/A </td>";
-			html += "<td> N/A </td>";
-			html += "</tr>";
+			html.append("<tr>");
+			html.append("<td> N/A </td>");
+			html.append("<td> N/A </td>");
+			html.append("<td> N/A </td>");
+			html.append("</tr>");
 		}
 		
 		for (Procedure pro : patient.getPatientProcedureList()){
-			html += "<tr>";
-			html += "<td>" + pro.getProcedureNo() +"</td>";
-			html += "<td>" + pro.getProcedureName() +"</td>";
-			html += "<td>" + pro.getProcedureCostInEuro() +"</td>";
-			html += "</tr>";
+			html.append("<tr>");
+			html.append("<td>").append(pro.getProcedureNo()).append("</td>");
+			html.append("<td>").append(pro.getProcedureName()).append("</td>");
+			html.append("<td>").append(pro.getProcedureCostInEuro()).append("</td>");
+			html.append("</tr>");
 		}
 		
-		html += "</table>";
+		html.append("</table>");
 		
 		
 		
 		// adding patient payments in table form
-		html += "<h3>Payments</h3>";
-		html += "<table width = \"100%\">";
-		html += "<tr>";
-		html += "<th>ID</th>";
-		html += "<th>Amount</th>";
-		html += "<th>Date</th>";
-		html += "<th>Status</th>";
-		html += "</tr>";
+		html.append("<h3>Payments</h3>");
+		html.append("<table width = \"100%\">");
+		html.append("<tr>");
+		html.append("<th>ID</th>");
+		html.append("<th>Amount</th>");
+		html.append("<th>Date</th>");
+		html.append("<th>Status</th>");
+		html.append("</tr>");
 		
 		if (patient.getPatientPaymentList().isEmpty()){
-			html += "<tr>";
-			html += "<td> N/A </td>";
-			html += "<td> N/A </td>";
-			html += "<td> N/A </td>";
-			html += "<td> N/A </td>";
-			html += "</tr>";
+			html.append("<tr>");
+			html.append("<td> N/A </td>");
+			html.append("<td> N/A </td>");
+			html.append("<td> N/A </td>");
+			html.append("<td> N/A </td>");
+			html.append("</tr>");
 		}
 		
 		for (Payment pay : patient.getPatientPaymentList()){
-			html += "<tr>";
-			html += "<td>" + pay.getPaymentNo() + "</td>";
-			html += "<td>" + pay.getPaymentAmount() + "</td>";
-			html += "<td>" + pay.getPaymentDate() + "</td>";
-			html += "<td>" + pay.getPaymentStatus() + "</td>";
-			html += "</tr>";
+			html.append("<tr>");
+			html.append("<td>").append(pay.getPaymentNo()).append("</td>");
+			html.append("<td>").append(Money.format(pay.getPaymentAmount())).append("</td>");
+			html.append("<td>").append(pay.getPaymentDate()).append("</td>");
+			html.append("<td>").append(pay.getPaymentStatus()).append("</td>");
+			html.append("</tr>");
 		}
 		
-		html += "</table>";
+		html.append("</table>");
 		
 		
 		// adding line break for next patient
-		html += "<br><br><br><hr><br><br><br>";
-		
-		return html;
+		html.append("<br><br><br><hr><br><br><br>");
 		
 	}
 	
@@ -286,5 +261,5 @@ public class ReportController {
 		
 	}
 	
-
+	
 }
@@ -0,0 +1,489 @@
+package controller;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+
+
+/**
+ * Brings the database schema up to date by applying, in order, each
+ * {@link Migration} newer than the version recorded in the "schema_version"
+ * table. Each migration is applied in its own transaction, so a failed
+ * migration leaves the schema at the last version which succeeded.
+ * 
+ * New migrations are added to the end of {@link #SchemaMigrator()} - a
+ * migration which has been released must never be changed.
+ * 
+ * @author Alan Sheehan - R00111909
+ */
+class SchemaMigrator {
+	
+	private ArrayList<Migration> migrations = new ArrayList<Migration>();
+	
+	private static final String CREATE_SCHEMA_VERSION = "CREATE TABLE IF NOT EXISTS schema_version"
+														+ "("
+														+ "version INTEGER PRIMARY KEY NOT NULL,"
+														+ "description TEXT NOT NULL,"
+														+ "applied DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP"
+														+ ");";
+	private static final String SELECT_SCHEMA_VERSION = "SELECT MAX(version) FROM schema_version;";
+	private static final String INSERT_SCHEMA_VERSION = "INSERT INTO schema_version (version, description) VALUES (?, ?);";
+	
+	
+	/**
+	 * Default constructor which lists every migration in order of version.
+	 */
+	public SchemaMigrator(){
+		
+		// the tables as they were before migrations were introduced, existing databases already have these
+		migrations.add(new Migration(1, "Baseline schema",
+				"CREATE TABLE IF NOT EXISTS Patients"
+				+ "("
+				+ "id INTEGER PRIMARY KEY NOT NULL,"
+				+ "name TEXT NOT NULL,"
+				+ "address TEXT NOT NULL,"
+				+ "phone TEXT NOT NULL"
+				+ ");",
+				
+				"CREATE TABLE IF NOT EXISTS Procedures"
+				+ "("
+				+ "id INTEGER PRIMARY KEY NOT NULL,"
+				+ "name TEXT UNIQUE NOT NULL,"
+				+ "price DOUBLE NOT NULL"
+				+ ");",
+				
+				"CREATE TABLE IF NOT EXISTS Payments"
+				+ "("
+				+ "patientID INTEGER NOT NULL,"
+				+ "id INTEGER PRIMARY KEY NOT NULL,"
+				+ "amount DOUBLE NOT NULL,"
+				+ "date DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,"
+				+ "paid BOOLEAN NOT NULL DEFAULT FALSE,"
+				+ "FOREIGN KEY(patientID) REFERENCES Patients(id) ON DELETE CASCADE ON UPDATE CASCADE"
+				+ ");",
+				
+				"CREATE TABLE IF NOT EXISTS ProcedureList"
+				+ "("
+				+ "patientID INTEGER NOT NULL,"
+				+ "procedureID INTEGER NOT NULL,"
+				+ "PRIMARY KEY(patientID, procedureID),"
+				+ "FOREIGN KEY(patientID) REFERENCES Patients(id) ON DELETE CASCADE ON UPDATE CASCADE,"
+				+ "FOREIGN KEY(procedureID) REFERENCES Procedures(id) ON DELETE CASCADE ON UPDATE CASCADE"
+				+ ");",
+				
+				"CREATE UNIQUE INDEX IF NOT EXISTS UniquePayments ON Payments(patientID, id);"));
+		
+		// procedureID is the child key of a cascade, so deleting a procedure otherwise scans all of ProcedureList
+		migrations.add(new Migration(2, "Secondary indexes",
+				"CREATE INDEX ProcedureListByProcedure ON ProcedureList(procedureID);",
+				"CREATE INDEX PaymentsByDate ON Payments(date);",
+				"CREATE INDEX PatientsByName ON Patients(name);"));
+		
+		// each patient's balance, kept up to date by triggers rather than summed each time it's needed
+		migrations.add(new Migration(3, "Patient balance ledger",
+				"CREATE TABLE PatientBalances"
+				+ "("
+				+ "patientID INTEGER PRIMARY KEY NOT NULL,"
+				+ "billed DOUBLE NOT NULL DEFAULT 0,"
+				+ "paid DOUBLE NOT NULL DEFAULT 0,"
+				+ "owed DOUBLE NOT NULL DEFAULT 0,"
+				+ "lastPayment DATETIME,"
+				+ "FOREIGN KEY(patientID) REFERENCES Patients(id) ON DELETE CASCADE ON UPDATE CASCADE"
+				+ ");",
+				
+				"CREATE INDEX PatientBalancesByOwed ON PatientBalances(owed);",
+				
+				"INSERT INTO PatientBalances (patientID, billed, paid, owed, lastPayment) "
+				+ "SELECT Pa.id, IFNULL(Pr.cost, 0), IFNULL(Py.paid, 0), IFNULL(Pr.cost, 0) - IFNULL(Py.paid, 0), Py.lastPayment "
+				+ "FROM Patients Pa "
+				+ "LEFT JOIN (SELECT patientID, MAX(date) AS lastPayment, SUM(CASE WHEN paid THEN amount ELSE 0 END) AS paid "
+				+ "FROM Payments GROUP BY patientID) Py ON Py.patientID = Pa.id "
+				+ "LEFT JOIN (SELECT PL.patientID, SUM(P.price) AS cost FROM ProcedureList PL, Procedures P "
+				+ "WHERE P.id = PL.procedureID GROUP BY PL.patientID) Pr ON Pr.patientID = Pa.id;",
+				
+				"CREATE TRIGGER BalanceOnPatientInsert AFTER INSERT ON Patients "
+				+ "BEGIN "
+				+ "INSERT INTO PatientBalances (patientID) VALUES (NEW.id);"
+				+ "END;",
+				
+				"CREATE TRIGGER BalanceOnProcedureAdd AFTER INSERT ON ProcedureList "
+				+ "BEGIN "
+				+ "UPDATE PatientBalances SET "
+				+ "billed = billed + (SELECT price FROM Procedures WHERE id = NEW.procedureID), "
+				+ "owed = owed + (SELECT price FROM Procedures WHERE id = NEW.procedureID) "
+				+ "WHERE patientID = NEW.patientID;"
+				+ "END;",
+				
+				// when a procedure is deleted its price is gone by the time its ProcedureList rows are
+				"CREATE TRIGGER BalanceOnProcedureRemove AFTER DELETE ON ProcedureList "
+				+ "BEGIN "
+				+ "UPDATE PatientBalances SET "
+				+ "billed = billed - IFNULL((SELECT price FROM Procedures WHERE id = OLD.procedureID), 0), "
+				+ "owed = owed - IFNULL((SELECT price FROM Procedures WHERE id = OLD.procedureID), 0) "
+				+ "WHERE patientID = OLD.patientID;"
+				+ "END;",
+				
+				"CREATE TRIGGER BalanceOnProcedureChange AFTER UPDATE OF procedureID ON ProcedureList "
+				+ "BEGIN "
+				+ "UPDATE PatientBalances SET "
+				+ "billed = billed - IFNULL((SELECT price FROM Procedures WHERE id = OLD.procedureID), 0) "
+				+ "+ (SELECT price FROM Procedures WHERE id = NEW.procedureID), "
+				+ "owed = owed - IFNULL((SELECT price FROM Procedures WHERE id = OLD.procedureID), 0) "
+				+ "+ (SELECT price FROM Procedures WHERE id = NEW.procedureID) "
+				+ "WHERE patientID = NEW.patientID;"
+				+ "END;",
+				
+				"CREATE TRIGGER BalanceOnProcedureDelete BEFORE DELETE ON Procedures "
+				+ "BEGIN "
+				+ "UPDATE PatientBalances SET billed = billed - OLD.price, owed = owed - OLD.price "
+				+ "WHERE patientID IN (SELECT patientID FROM ProcedureList WHERE procedureID = OLD.id);"
+				+ "END;",
+				
+				"CREATE TRIGGER BalanceOnPriceChange AFTER UPDATE OF price ON Procedures "
+				+ "BEGIN "
+				+ "UPDATE PatientBalances SET billed = billed + NEW.price - OLD.price, owed = owed + NEW.price - OLD.price "
+				+ "WHERE patientID IN (SELECT patientID FROM ProcedureList WHERE procedureID = NEW.id);"
+				+ "END;",
+				
+				"CREATE TRIGGER BalanceOnPaymentAdd AFTER INSERT ON Payments "
+				+ "BEGIN "
+				+ "UPDATE PatientBalances SET "
+				+ "paid = paid + (CASE WHEN NEW.paid THEN NEW.amount ELSE 0 END), "
+				+ "owed = owed - (CASE WHEN NEW.paid THEN NEW.amount ELSE 0 END), "
+				+ "lastPayment = MAX(IFNULL(lastPayment, NEW.date), NEW.date) "
+				+ "WHERE patientID = NEW.patientID;"
+				+ "END;",
+				
+				"CREATE TRIGGER BalanceOnPaymentRemove AFTER DELETE ON Payments "
+				+ "BEGIN "
+				+ "UPDATE PatientBalances SET "
+				+ "paid = paid - (CASE WHEN OLD.paid THEN OLD.amount ELSE 0 END), "
+				+ "owed = owed + (CASE WHEN OLD.paid THEN OLD.amount ELSE 0 END), "
+				+ "lastPayment = (SELECT MAX(date) FROM Payments WHERE patientID = OLD.patientID) "
+				+ "WHERE patientID = OLD.patientID;"
+				+ "END;",
+				
+				"CREATE TRIGGER BalanceOnPaymentChange AFTER UPDATE OF amount, paid, date ON Payments "
+				+ "BEGIN "
+				+ "UPDATE PatientBalances SET "
+				+ "paid = paid - (CASE WHEN OLD.paid THEN OLD.amount ELSE 0 END) + (CASE WHEN NEW.paid THEN NEW.amount ELSE 0 END), "
+				+ "owed = owed + (CASE WHEN OLD.paid THEN OLD.amount ELSE 0 END) - (CASE WHEN NEW.paid THEN NEW.amount ELSE 0 END), "
+				+ "lastPayment = (SELECT MAX(date) FROM Payments WHERE patientID = NEW.patientID) "
+				+ "WHERE patientID = NEW.patientID;"
+				+ "END;"));
+		
+		// a full-text index of each patient's details, read from Patients & kept up to date by triggers
+		migrations.add(new Migration(4, "Patient search index",
+				"CREATE VIRTUAL TABLE PatientSearch USING fts4(content=\"Patients\", name, address, phone, prefix=\"2,3\");",
+				
+				"INSERT INTO PatientSearch(PatientSearch) VALUES('rebuild');",
+				
+				// the old details are removed from the index before they're gone from Patients
+				"CREATE TRIGGER SearchBeforePatientUpdate BEFORE UPDATE ON Patients "
+				+ "BEGIN "
+				+ "DELETE FROM PatientSearch WHERE docid = OLD.id;"
+				+ "END;",
+				
+				"CREATE TRIGGER SearchBeforePatientDelete BEFORE DELETE ON Patients "
+				+ "BEGIN "
+				+ "DELETE FROM PatientSearch WHERE docid = OLD.id;"
+				+ "END;",
+				
+				"CREATE TRIGGER SearchOnPatientUpdate AFTER UPDATE ON Patients "
+				+ "BEGIN "
+				+ "INSERT INTO PatientSearch(docid, name, address, phone) VALUES (NEW.id, NEW.name, NEW.address, NEW.phone);"
+				+ "END;",
+				
+				"CREATE TRIGGER SearchOnPatientInsert AFTER INSERT ON Patients "
+				+ "BEGIN "
+				+ "INSERT INTO PatientSearch(docid, name, address, phone) VALUES (NEW.id, NEW.name, NEW.address, NEW.phone);"
+				+ "END;"));
+		
+		// the digits of each phone number, indexed by their tail for finding callers, see PhoneIndex
+		migrations.add(new Migration(5, "Phone number keys",
+				"ALTER TABLE Patients ADD COLUMN phoneDigits TEXT;",
+				"ALTER TABLE Patients ADD COLUMN phoneTail TEXT;",
+				
+				// only changes to the indexed columns re-index a patient, so filling in the keys doesn't
+				"DROP TRIGGER SearchBeforePatientUpdate;",
+				"DROP TRIGGER SearchOnPatientUpdate;",
+				
+				"CREATE TRIGGER SearchBeforePatientUpdate BEFORE UPDATE OF name, address, phone ON Patients "
+				+ "BEGIN "
+				+ "DELETE FROM PatientSearch WHERE docid = OLD.id;"
+				+ "END;",
+				
+				"CREATE TRIGGER SearchOnPatientUpdate AFTER UPDATE OF name, address, phone ON Patients "
+				+ "BEGIN "
+				+ "INSERT INTO PatientSearch(docid, name, address, phone) VALUES (NEW.id, NEW.name, NEW.address, NEW.phone);"
+				+ "END;") {
+			
+			@Override
+			public void apply(Connection connection) throws SQLException {
+				
+				super.apply(connection);
+				
+				// SQLite can't strip the digits from a number itself, so the keys are filled in here
+				Statement select = connection.createStatement();
+				PreparedStatement update = connection.prepareStatement("UPDATE Patients SET phoneDigits = ?, phoneTail = ? WHERE id = ?;");
+				
+				try {
+					
+					ResultSet patients = select.executeQuery("SELECT id, phone FROM Patients;");
+					
+					while (patients.next()){
+						update.setString(1, PhoneIndex.digits(patients.getString(2)));
+						update.setString(2, PhoneIndex.tail(patients.getString(2)));
+						update.setInt(3, patients.getInt(1));
+						update.addBatch();
+					}
+					
+					update.executeBatch();
+					
+				} finally {
+					update.close();
+					select.close();
+				}
+				
+				Statement index = connection.createStatement();
+				
+				try {
+					index.executeUpdate("CREATE INDEX PatientsByPhoneTail ON Patients(phoneTail);");
+				} finally {
+					index.close();
+				}
+				
+			}
+			
+		});
+		
+		// amounts of money as whole cents, so that they add up exactly
+		migrations.add(new TableRebuild(6, "Money in cents", new String[] {"Procedures", "Payments", "PatientBalances"},
+				"CREATE TABLE NewProcedures"
+				+ "("
+				+ "id INTEGER PRIMARY KEY NOT NULL,"
+				+ "name TEXT UNIQUE NOT NULL,"
+				+ "price INTEGER NOT NULL"
+				+ ");",
+				
+				"INSERT INTO NewProcedures (id, name, price) "
+				+ "SELECT id, name, CAST(ROUND(price * 100) AS INTEGER) FROM Procedures;",
+				
+				"CREATE TABLE NewPayments"
+				+ "("
+				+ "patientID INTEGER NOT NULL,"
+				+ "id INTEGER PRIMARY KEY NOT NULL,"
+				+ "amount INTEGER NOT NULL,"
+				+ "date DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,"
+				+ "paid BOOLEAN NOT NULL DEFAULT FALSE,"
+				+ "FOREIGN KEY(patientID) REFERENCES Patients(id) ON DELETE CASCADE ON UPDATE CASCADE"
+				+ ");",
+				
+				"INSERT INTO NewPayments (patientID, id, amount, date, paid) "
+				+ "SELECT patientID, id, CAST(ROUND(amount * 100) AS INTEGER), date, paid FROM Payments;",
+				
+				"CREATE TABLE NewPatientBalances"
+				+ "("
+				+ "patientID INTEGER PRIMARY KEY NOT NULL,"
+				+ "billed INTEGER NOT NULL DEFAULT 0,"
+				+ "paid INTEGER NOT NULL DEFAULT 0,"
+				+ "owed INTEGER NOT NULL DEFAULT 0,"
+				+ "lastPayment DATETIME,"
+				+ "FOREIGN KEY(patientID) REFERENCES Patients(id) ON DELETE CASCADE ON UPDATE CASCADE"
+				+ ");",
+				
+				// the balances are summed again from the amounts in cents, rather than rounding the old sums
+				"INSERT INTO NewPatientBalances (patientID, billed, paid, owed, lastPayment) "
+				+ "SELECT Pa.id, IFNULL(Pr.cost, 0), IFNULL(Py.paid, 0), IFNULL(Pr.cost, 0) - IFNULL(Py.paid, 0), Py.lastPayment "
+				+ "FROM Patients Pa "
+				+ "LEFT JOIN (SELECT patientID, MAX(date) AS lastPayment, SUM(CASE WHEN paid THEN amount ELSE 0 END) AS paid "
+				+ "FROM NewPayments GROUP BY patientID) Py ON Py.patientID = Pa.id "
+				+ "LEFT JOIN (SELECT PL.patientID, SUM(P.price) AS cost FROM ProcedureList PL, NewProcedures P "
+				+ "WHERE P.id = PL.procedureID GROUP BY PL.patientID) Pr ON Pr.patientID = Pa.id;",
+				
+				// dropping a table drops its indexes & triggers too, they're created again once it's replaced
+				"DROP TABLE Procedures;",
+				"DROP TABLE Payments;",
+				"DROP TABLE PatientBalances;",
+				
+				"ALTER TABLE NewProcedures RENAME TO Procedures;",
+				"ALTER TABLE NewPayments RENAME TO Payments;",
+				"ALTER TABLE NewPatientBalances RENAME TO PatientBalances;"));
+			
+		// payment dates as milliseconds since the epoch, rather than text parsed for every payment read - the
+		// text was written by CURRENT_TIMESTAMP, so is in UTC
+		migrations.add(new TableRebuild(7, "Payment dates as epoch milliseconds", new String[] {"Payments"},
+				"CREATE TABLE NewPayments"
+				+ "("
+				+ "patientID INTEGER NOT NULL,"
+				+ "id INTEGER PRIMARY KEY NOT NULL,"
+				+ "amount INTEGER NOT NULL,"
+				+ "date INTEGER NOT NULL,"
+				+ "paid BOOLEAN NOT NULL DEFAULT FALSE,"
+				+ "FOREIGN KEY(patientID) REFERENCES Patients(id) ON DELETE CASCADE ON UPDATE CASCADE"
+				+ ");",
+				
+				"INSERT INTO NewPayments (patientID, id, amount, date, paid) "
+				+ "SELECT patientID, id, amount, CAST(strftime('%s', date) AS INTEGER) * 1000, paid FROM Payments;",
+				
+				"UPDATE PatientBalances SET lastPayment = CAST(strftime('%s', lastPayment) AS INTEGER) * 1000 "
+				+ "WHERE lastPayment IS NOT NULL;",
+					
+				"DROP TABLE Payments;",
+					
+				"ALTER TABLE NewPayments RENAME TO Payments;"));
+		
+	}
+	
+	
+	/**
+	 * Applies every migration newer than the database's current schema version.
+	 * 
+	 * @param connection to the database, which must not be read-only
+	 * @return the schema version of the database afterwards
+	 * @throws SQLException if a migration fails, the migrations before it are kept
+	 */
+	public int migrate(Connection connection) throws SQLException {
+		
+		int version = readVersion(connection);
+		
+		for (Migration migration : migrations){
+			if (migration.getVersion() > version){
+				apply(connection, migration);
+				version = migration.getVersion();
+			}
+		}
+		
+		return version;
+		
+	}
+	
+	/**
+	 * Reads the current schema version, creating the version table if needed.
+	 * 
+	 * @param connection to the database
+	 * @return the current schema version, 0 if no migration has been applied
+	 */
+	private int readVersion(Connection connection) throws SQLException {
+		
+		Statement statement = connection.createStatement();
+		
+		try {
+			
+			statement.executeUpdate(CREATE_SCHEMA_VERSION);
+			
+			ResultSet result = statement.executeQuery(SELECT_SCHEMA_VERSION);
+			
+			try {
+				return result.next() ? result.getInt(1) : 0;
+			} finally {
+				result.close();
+			}
+			
+		} finally {
+			statement.close();
+		}
+		
+	}
+	
+	/**
+	 * Applies a single migration & records its version in one transaction.
+	 * 
+	 * @param connection to the database
+	 * @param migration to apply
+	 */
+	private void apply(Connection connection, Migration migration) throws SQLException {
+		
+		// foreign keys can only be turned off outside of a transaction
+		if (migration.rebuildsTables()){
+			pragma(connection, "PRAGMA foreign_keys = OFF;");
+		}
+		
+		connection.setAutoCommit(false);
+		
+		try {
+			
+			migration.apply(connection);
+			
+			if (migration.rebuildsTables()){
+				checkForeignKeys(connection);
+			}
+			
+			PreparedStatement statement = connection.prepareStatement(INSERT_SCHEMA_VERSION);
+			
+			try {
+				statement.setInt(1, migration.getVersion());
+				statement.setString(2, migration.getDescription());
+				statement.executeUpdate();
+			} finally {
+				statement.close();
+			}
+			
+			connection.commit();
+			
+		} catch (SQLException e){
+			connection.rollback();
+			throw new SQLException("Schema migration " + migration + " failed: " + e.getMessage(), e);
+		} finally {
+			
+			connection.setAutoCommit(true);
+			
+			if (migration.rebuildsTables()){
+				pragma(connection, "PRAGMA foreign_keys = ON;");
+			}
+			
+		}
+		
+	}
+	
+	/**
+	 * Fails if any row refers to a row which doesn't exist, as may happen
+	 * while foreign keys are off.
+	 * 
+	 * @param connection to the database
+	 * @throws SQLException if any foreign key is broken
+	 */
+	private void checkForeignKeys(Connection connection) throws SQLException {
+		
+		Statement statement = connection.createStatement();
+		
+		try {
+			
+			ResultSet result = statement.executeQuery("PRAGMA foreign_key_check;");
+			
+			try {
+				if (result.next()){
+					throw new SQLException("A row of " + result.getString(1) + " refers to a missing row of " + result.getString(3));
+				}
+			} finally {
+				result.close();
+			}
+			
+		} finally {
+			statement.close();
+		}
+		
+	}
+	
+	/**
+	 * Runs a pragma which changes a setting of the connection.
+	 * 
+	 * @param connection to the database
+	 * @param sql of the pragma
+	 */
+	private void pragma(Connection connection, String sql) throws SQLException {
+		
+		Statement statement = connection.createStatement();
+		
+		try {
+			statement.executeUpdate(sql);
+		} finally {
+			statement.close();
+		}
+		
+	}
+	
+}
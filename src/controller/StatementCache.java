@@ -0,0 +1,114 @@
+package controller;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+
+
+/**
+ * Holds the prepared statements created on a single connection, keyed by
+ * their SQL, so that each statement is only parsed & planned by SQLite once.
+ * Keeps count of how often a statement is reused versus prepared.
+ * 
+ * @author Alan Sheehan - R00111909
+ */
+class StatementCache {
+	
+	private Connection connection;
+	
+	private HashMap<String, PreparedStatement> statements = new HashMap<String, PreparedStatement>();
+	
+	private int hits = 0;
+	private int misses = 0;
+	
+	
+	/**
+	 * Creates an empty cache for statements on the given connection.
+	 * 
+	 * @param connection the statements are prepared on
+	 */
+	public StatementCache(Connection connection){
+		this.connection = connection;
+	}
+	
+	
+	/**
+	 * Returns the prepared statement for the given SQL, preparing it if it
+	 * hasn't been prepared yet. Any parameters from a previous use are cleared.
+	 * 
+	 * @param sql the sql statement
+	 * @return the prepared statement
+	 * @throws SQLException if the statement can't be prepared
+	 */
+	public PreparedStatement prepare(String sql) throws SQLException {
+		
+		PreparedStatement statement = statements.get(sql);
+		
+		if (statement == null){
+			statement = connection.prepareStatement(sql);
+			statements.put(sql, statement);
+			misses++;
+		}
+		else {
+			statement.clearParameters();
+			hits++;
+		}
+		
+		return statement;
+		
+	}
+	
+	
+	/**
+	 * Closes & removes the statement for the given SQL. The SQLite driver can't
+	 * re-execute a statement that has failed, so failed statements are
+	 * discarded & prepared again the next time they're used.
+	 * 
+	 * @param sql the sql statement
+	 */
+	public void discard(String sql){
+		
+		PreparedStatement statement = statements.remove(sql);
+		
+		if (statement != null){
+			try {
+				statement.close();
+			} catch (SQLException e){
+				// statement is being discarded either way
+			}
+		}
+		
+	}
+	
+	
+	/**
+	 * Closes every statement held by the cache & empties it.
+	 */
+	public void close(){
+		
+		for (PreparedStatement statement : statements.values()){
+			try {
+				statement.close();
+			} catch (SQLException e){
+				// statement is being discarded either way
+			}
+		}
+		
+		statements.clear();
+		
+	}
+	
+	
+	
+	// GETTERS
+	
+	public int getHits(){
+		return hits;
+	}
+	
+	public int getMisses(){
+		return misses;
+	}
+	
+}
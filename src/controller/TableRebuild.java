@@ -0,0 +1,101 @@
+package controller;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+
+
+/**
+ * A migration which replaces tables with new ones, as SQLite can't change the
+ * type of a column in place. Its statements create each new table, copy the
+ * rows of the old table into it, drop the old table & rename the new one, &
+ * the indexes & triggers on the old tables - which are dropped along with
+ * them - are then created again exactly as they were.
+ * 
+ * @author Alan Sheehan - R00111909
+ */
+class TableRebuild extends Migration {
+	
+	private String[] tables;
+	
+	
+	/**
+	 * Creates a migration which runs the given SQL statements in order.
+	 * 
+	 * @param version of the schema the migration produces
+	 * @param description of the change
+	 * @param tables the names of the tables replaced
+	 * @param statements the sql statements making up the change
+	 */
+	public TableRebuild(int version, String description, String[] tables, String... statements){
+		
+		super(version, description, statements);
+		this.tables = tables;
+		
+	}
+	
+	
+	@Override
+	public void apply(Connection connection) throws SQLException {
+		
+		Statement statement = connection.createStatement();
+		
+		try {
+			
+			// the indexes & triggers on the tables being replaced, as they were created
+			ArrayList<String> schema = new ArrayList<String>();
+			ResultSet result = statement.executeQuery("SELECT sql FROM sqlite_master WHERE type IN ('index', 'trigger') "
+					+ "AND tbl_name IN (" + quote(tables) + ") AND sql IS NOT NULL;");
+			
+			try {
+				while (result.next()){
+					schema.add(result.getString(1));
+				}
+			} finally {
+				result.close();
+			}
+			
+			super.apply(connection);
+			
+			for (String sql : schema){
+				statement.executeUpdate(sql);
+			}
+			
+		} finally {
+			statement.close();
+		}
+		
+	}
+	
+	@Override
+	public boolean rebuildsTables(){
+		return true;
+	}
+	
+	/**
+	 * Lists the given names as SQL strings.
+	 * 
+	 * @param names to be listed
+	 * @return the names quoted & separated by commas
+	 */
+	private static String quote(String[] names){
+		
+		StringBuilder list = new StringBuilder();
+		
+		for (String name : names){
+			
+			if (list.length() > 0){
+				list.append(", ");
+			}
+			
+			list.append('\'').append(name).append('\'');
+			
+		}
+		
+		return list.toString();
+		
+	}
+	
+}
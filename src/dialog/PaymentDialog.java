@@ -22,6 +22,7 @@ import javax.swing.text.AttributeSet;
 import javax.swing.text.BadLocationException;
 import javax.swing.text.DocumentFilter;
 
+import model.Money;
 import model.Payment;
 import res.ImageResources;
 
@@ -170,7 +171,7 @@ public class PaymentDialog extends JDialog {
 		
 		date = payment.getPaymentDate();
 		
-		amountField.setText(Double.toString(payment.getPaymentAmount()));
+		amountField.setText(Money.toPlainString(payment.getPaymentAmount()));
 		isPaid.setSelected(payment.getPaymentStatus());
 		dateField.setText(date.toString());
 		
@@ -200,7 +201,7 @@ public class PaymentDialog extends JDialog {
 	
 	
 	/**
-	 * Worker method which ensures the entry is a valid double and
+	 * Worker method which ensures the entry is a valid amount and
 	 * is greater than 0.
 	 */
 	private void validEntry(){
@@ -209,7 +210,7 @@ public class PaymentDialog extends JDialog {
 		
 		if (! amount.isEmpty()){
 			
-			if (Double.parseDouble(amount) > 0){
+			if (Money.parse(amount) > 0){
 				confirmButton.setEnabled(true);
 			}
 			else {
@@ -290,7 +291,7 @@ public class PaymentDialog extends JDialog {
 			@Override
 			public void actionPerformed(ActionEvent e) {
 
-				double amount = Double.parseDouble(amountField.getText());
+				long amount = Money.parse(amountField.getText());
 				
 				if (payment == null){
 					payment = new Payment(amount, isPaid.isSelected());
@@ -20,7 +20,9 @@ import javax.swing.text.AttributeSet;
 import javax.swing.text.BadLocationException;
 import javax.swing.text.DocumentFilter;
 
+import model.Money;
 import model.Procedure;
+import model.ProcedureList;
 import res.ImageResources;
 
 /**
@@ -128,13 +130,19 @@ public class ProcedureAddDialog extends JDialog {
 	/**
 	 * Checks each text field to see if they are empty. Enables the 
 	 * confirm button if each field has text, disables it otherwise.
+	 * The name is looked up as it's typed, & a name already on the
+	 * system is refused.
 	 */
 	private void validEntry(){
 		
 		String amount = costField.getText();
 		
+		// procedures are picked by name, so no two may share one
+		boolean taken = ProcedureList.getInstance().getProcedure(nameField.getText()) != null;
+		nameField.setToolTipText(taken ? "A procedure of this name is already on the system" : null);
+		
 		if (nameField.getText().isEmpty() ||
-				costField.getText().isEmpty()) {
+				costField.getText().isEmpty() || taken) {
 			
 			addButton.setEnabled(false);
 			
@@ -142,7 +150,7 @@ public class ProcedureAddDialog extends JDialog {
 		
 		else if (! amount.isEmpty()){
 			
-			if (Double.parseDouble(amount) > 0){
+			if (Money.parse(amount) > 0){
 				addButton.setEnabled(true);
 			}
 			else {
@@ -226,7 +234,7 @@ public class ProcedureAddDialog extends JDialog {
 			@Override
 			public void actionPerformed(ActionEvent e) {
 				
-				double amount = Double.parseDouble((costField.getText()));
+				long amount = Money.parse(costField.getText());
 				
 				if (procedure == null){
 					procedure = new Procedure(nameField.getText(), amount);
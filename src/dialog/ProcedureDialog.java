@@ -4,6 +4,7 @@ import java.awt.Dimension;
 import java.awt.FlowLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.ArrayList;
 
 import javax.swing.BoxLayout;
 import javax.swing.JButton;
@@ -15,6 +16,8 @@ import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JTextField;
 import javax.swing.SwingConstants;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 
 import model.CustomComboBoxModel;
 import model.Procedure;
@@ -23,24 +26,26 @@ import res.ImageResources;
 import style.SimpleProcedureCellRenderer;
 
 public class ProcedureDialog extends JDialog {
-
+	
 	private static final long serialVersionUID = 4464510166069612805L;
 	
 	
 	private Procedure procedure;
 	
+	private ArrayList<Procedure> plan = new ArrayList<Procedure>();
+	
 	
 	private final Dimension labelSize = new Dimension(70, 30);
 	
-	private JLabel typeLabel, costLabel;
+	private JLabel searchLabel, typeLabel, costLabel;
 	
 	private JComboBox<Procedure> typeComboBox;
 	
-	private JTextField costField;
+	private JTextField searchField, costField;
 	
-	private JButton confirmButton, cancelButton;
+	private JButton confirmButton, planButton, cancelButton;
 	
-	private JPanel typeContainer, costContainer, buttonContainer;
+	private JPanel searchContainer, typeContainer, costContainer, buttonContainer;
 	
 	private CustomComboBoxModel model;
 	
@@ -57,6 +62,9 @@ public class ProcedureDialog extends JDialog {
 		
 		
 		// creating text labels
+		searchLabel = new JLabel("Search:", SwingConstants.RIGHT);
+		searchLabel.setPreferredSize(labelSize);
+		
 		typeLabel = new JLabel("Type:", SwingConstants.RIGHT);
 		typeLabel.setPreferredSize(labelSize);
 		
@@ -65,6 +73,9 @@ public class ProcedureDialog extends JDialog {
 		
 		
 		// creating text fields
+		searchField = new JTextField(20);
+		searchField.setToolTipText("Type the start of a procedure's name, or of its id");
+		
 		costField = new JTextField(20);
 		costField.setEnabled(false);
 		
@@ -80,29 +91,37 @@ public class ProcedureDialog extends JDialog {
 		
 		// creating buttons
 		confirmButton = new JButton("Confirm");
+		planButton = new JButton("Add Another");
+		planButton.setVisible(false);
 		cancelButton = new JButton("Cancel");
 		
 		
 		// creating component containers
+		searchContainer = new JPanel(new FlowLayout());
 		typeContainer = new JPanel(new FlowLayout());
 		costContainer = new JPanel(new FlowLayout());
 		buttonContainer = new JPanel(new FlowLayout());
 		
 		
 		// adding components to containers
+		searchContainer.add(searchLabel);
+		searchContainer.add(searchField);
+		
 		typeContainer.add(typeLabel);
 		typeContainer.add(typeComboBox);
 		
 		costContainer.add(costLabel);
 		costContainer.add(costField);
-
+		
 		buttonContainer.add(confirmButton);
+		buttonContainer.add(planButton);
 		buttonContainer.add(cancelButton);
 		
 		
 		// adding containers to frame
 		getContentPane().setLayout(new BoxLayout(getContentPane(), BoxLayout.Y_AXIS));
 		
+		getContentPane().add(searchContainer);
 		getContentPane().add(typeContainer);
 		getContentPane().add(costContainer);
 		getContentPane().add(buttonContainer);
@@ -126,17 +145,38 @@ public class ProcedureDialog extends JDialog {
 		
 		setIconImage(ImageResources.PROCEDURE_ADD_ICON);
 		
-		if (ProcedureList.getInstance().isEmpty()){
+		if (model.getSize() == 0){
 			JOptionPane.showMessageDialog(null, "There are no Procedures on the system\nCreate a Procedure via the \"Administration\" menu.", "Error", JOptionPane.ERROR_MESSAGE);
 			return null;
 		}
 		
 		typeComboBox.setSelectedIndex(0);
-		setVisible(true);
+		showFollowingProcedures();
 		return procedure;
 	}
 	
 	
+	/**
+	 * Used to display the dialog when scheduling a treatment plan. Each
+	 * procedure chosen with "Add Another" is added to the plan, along with
+	 * the procedure selected when the user confirms.
+	 * 
+	 * @return the procedures in the plan, empty if the user cancels
+	 */
+	public ArrayList<Procedure> showPlanDialog(){
+		
+		planButton.setVisible(true);
+		pack();
+		
+		if (showDialog() == null){
+			plan.clear();
+		}
+		
+		return plan;
+		
+	}
+	
+	
 	/**
 	 * Used to display the dialog when editing a patient. Fills the 
 	 * text fields with that patient's data. Remains open until the
@@ -149,14 +189,14 @@ public class ProcedureDialog extends JDialog {
 		
 		setIconImage(ImageResources.PROCEDURE_EDIT_ICON);
 		
-		if (ProcedureList.getInstance().isEmpty()){
+		if (model.getSize() == 0){
 			JOptionPane.showMessageDialog(null, "FUCKED UP", "NOPE", JOptionPane.ERROR_MESSAGE);
 			return null;
 		}
 		
 		this.procedure = procedure;
 		
-		int index = ProcedureList.getInstance().indexOf(procedure);
+		int index = model.getIndexOf(procedure);
 		
 		if (index >= 0){
 			typeComboBox.setSelectedIndex(index);
@@ -165,13 +205,50 @@ public class ProcedureDialog extends JDialog {
 			typeComboBox.setSelectedIndex(0);
 		}
 		
-		setVisible(true);
+		showFollowingProcedures();
 		
 		return this.procedure;
 		
 	}
 	
 	
+	/**
+	 * Shows the dialog until it's closed, keeping the combo-box in step with
+	 * the procedures should they change meanwhile.
+	 */
+	private void showFollowingProcedures(){
+		
+		ProcedureList.addListener(model);
+		
+		try {
+			setVisible(true);
+		} finally {
+			ProcedureList.removeListener(model);
+		}
+		
+	}
+	
+	
+	/**
+	 * Shows only the procedures matching the text in the search field, &
+	 * allows one to be chosen only if any match. The list of them is opened
+	 * again, so that it's sized to the procedures now shown.
+	 */
+	private void search(){
+		
+		model.setFilter(searchField.getText());
+		confirmButton.setEnabled(model.getSize() > 0);
+		planButton.setEnabled(model.getSize() > 0);
+		
+		typeComboBox.hidePopup();
+		
+		if (typeComboBox.isShowing() && model.getSize() > 0){
+			typeComboBox.showPopup();
+		}
+		
+	}
+	
+	
 	/**
 	 * Sets up all necessary listeners.
 	 */
@@ -180,13 +257,36 @@ public class ProcedureDialog extends JDialog {
 		
 		
 		
+		// narrows the procedures in the combo-box down to those matching the
+		// search as the user types, & opens the list of them
+		searchField.getDocument().addDocumentListener(new DocumentListener() {
+			
+			@Override
+			public void insertUpdate(DocumentEvent e) {
+				search();
+			}
+			
+			@Override
+			public void removeUpdate(DocumentEvent e) {
+				search();
+			}
+			
+			@Override
+			public void changedUpdate(DocumentEvent e) {
+				search();
+			}
+			
+		});
+		
+		
 		// setting the price field to the price of the selected procedure in euro
 		typeComboBox.addActionListener(new ActionListener(){
 			
 			@Override
 			public void actionPerformed(ActionEvent e){
 				
-				costField.setText(((Procedure)typeComboBox.getSelectedItem()).getProcedureCostInEuro());
+				Procedure selected = (Procedure) typeComboBox.getSelectedItem();
+				costField.setText(selected == null ? "" : selected.getProcedureCostInEuro());
 				
 			}
 			
@@ -201,7 +301,11 @@ public class ProcedureDialog extends JDialog {
 			@Override
 			public void actionPerformed(ActionEvent e) {
 				
-				procedure = ProcedureList.getInstance().get(typeComboBox.getSelectedIndex());
+				procedure = (Procedure) typeComboBox.getSelectedItem();
+				
+				if (planButton.isVisible() && !plan.contains(procedure)){
+					plan.add(procedure);
+				}
 				
 				setVisible(false);
 				dispose();
@@ -211,6 +315,25 @@ public class ProcedureDialog extends JDialog {
 		});
 		
 		
+		// adds the selected procedure to the plan & keeps the dialog open
+		planButton.addActionListener(new ActionListener() {
+			
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				
+				Procedure selected = (Procedure) typeComboBox.getSelectedItem();
+				
+				if (selected != null && !plan.contains(selected)){
+					plan.add(selected);
+				}
+				
+				confirmButton.setText("Confirm (" + (plan.size() + 1) + ")");
+				
+			}
+			
+		});
+		
+		
 		// closes the dialog
 		cancelButton.addActionListener(new ActionListener() {
 			
@@ -15,6 +15,8 @@ import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JTextField;
 import javax.swing.SwingConstants;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 
 import model.CustomComboBoxModel;
 import model.Procedure;
@@ -35,15 +37,15 @@ public class ProcedureRemoveDialog extends JDialog {
 	
 	private final Dimension labelSize = new Dimension(70, 30);
 	
-	private JLabel typeLabel, costLabel;
+	private JLabel searchLabel, typeLabel, costLabel;
 	
 	private JComboBox<Procedure> typeComboBox;
 	
-	private JTextField costField;
+	private JTextField searchField, costField;
 	
 	private JButton removeButton, cancelButton;
 	
-	private JPanel typeContainer, costContainer, buttonContainer;
+	private JPanel searchContainer, typeContainer, costContainer, buttonContainer;
 	
 	private CustomComboBoxModel model;
 	
@@ -60,6 +62,9 @@ public class ProcedureRemoveDialog extends JDialog {
 		
 		
 		// creating text labels
+		searchLabel = new JLabel("Search:", SwingConstants.RIGHT);
+		searchLabel.setPreferredSize(labelSize);
+		
 		typeLabel = new JLabel("Type:", SwingConstants.RIGHT);
 		typeLabel.setPreferredSize(labelSize);
 		
@@ -68,6 +73,9 @@ public class ProcedureRemoveDialog extends JDialog {
 		
 		
 		// creating text fields
+		searchField = new JTextField(20);
+		searchField.setToolTipText("Type the start of a procedure's name, or of its id");
+		
 		costField = new JTextField(20);
 		costField.setEnabled(false);
 		
@@ -87,12 +95,16 @@ public class ProcedureRemoveDialog extends JDialog {
 		
 		
 		// creating component containers
+		searchContainer = new JPanel(new FlowLayout());
 		typeContainer = new JPanel(new FlowLayout());
 		costContainer = new JPanel(new FlowLayout());
 		buttonContainer = new JPanel(new FlowLayout());
 		
 		
 		// adding components to containers
+		searchContainer.add(searchLabel);
+		searchContainer.add(searchField);
+		
 		typeContainer.add(typeLabel);
 		typeContainer.add(typeComboBox);
 		
@@ -106,6 +118,7 @@ public class ProcedureRemoveDialog extends JDialog {
 		// adding containers to frame
 		getContentPane().setLayout(new BoxLayout(getContentPane(), BoxLayout.Y_AXIS));
 		
+		getContentPane().add(searchContainer);
 		getContentPane().add(typeContainer);
 		getContentPane().add(costContainer);
 		getContentPane().add(buttonContainer);
@@ -126,23 +139,81 @@ public class ProcedureRemoveDialog extends JDialog {
 	 */
 	public Procedure showDialog(){
 		
-		if (ProcedureList.getInstance().isEmpty()){
+		if (model.getSize() == 0){
 			JOptionPane.showMessageDialog(null, "There are no Procedures on the system\nCreate a Procedure via the \"Administration\" menu.", "Error", JOptionPane.ERROR_MESSAGE);
 			return null;
 		}
 		
 		typeComboBox.setSelectedIndex(0);
-		setVisible(true);
+		showFollowingProcedures();
 		
 		return procedure;
 		
 	}
 	
 	
+	/**
+	 * Shows the dialog until it's closed, keeping the combo-box in step with
+	 * the procedures should they change meanwhile.
+	 */
+	private void showFollowingProcedures(){
+		
+		ProcedureList.addListener(model);
+		
+		try {
+			setVisible(true);
+		} finally {
+			ProcedureList.removeListener(model);
+		}
+		
+	}
+	
+	
+	/**
+	 * Shows only the procedures matching the text in the search field, &
+	 * allows one to be chosen only if any match. The list of them is opened
+	 * again, so that it's sized to the procedures now shown.
+	 */
+	private void search(){
+		
+		model.setFilter(searchField.getText());
+		removeButton.setEnabled(model.getSize() > 0);
+		
+		typeComboBox.hidePopup();
+		
+		if (typeComboBox.isShowing() && model.getSize() > 0){
+			typeComboBox.showPopup();
+		}
+		
+	}
+	
+	
 	/**
 	 * Sets up all necessary listeners.
 	 */
 	private void setListeners(){
+		
+		// narrows the procedures in the combo-box down to those matching the
+		// search as the user types, & opens the list of them
+		searchField.getDocument().addDocumentListener(new DocumentListener() {
+			
+			@Override
+			public void insertUpdate(DocumentEvent e) {
+				search();
+			}
+			
+			@Override
+			public void removeUpdate(DocumentEvent e) {
+				search();
+			}
+			
+			@Override
+			public void changedUpdate(DocumentEvent e) {
+				search();
+			}
+			
+		});
+		
 
 		// setting the price field to the price of the selected procedure in euro
 		typeComboBox.addActionListener(new ActionListener(){
@@ -150,20 +221,18 @@ public class ProcedureRemoveDialog extends JDialog {
 			@Override
 			public void actionPerformed(ActionEvent e){
 				procedure = (Procedure) typeComboBox.getSelectedItem();
-				costField.setText(procedure.getProcedureCostInEuro());
+				costField.setText(procedure == null ? "" : procedure.getProcedureCostInEuro());
 			}
 			
 		});
 		
 		
-		// removes the selected procedure in the combo-box from the system
+		// returns the selected procedure in the combo-box, to be removed from the system
 		removeButton.addActionListener(new ActionListener() {
 			
 			@Override
 			public void actionPerformed(ActionEvent e) {
 				
-				ProcedureList.getInstance().remove(typeComboBox.getSelectedIndex());
-				
 				setVisible(false);
 				dispose();
 				
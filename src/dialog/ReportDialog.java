@@ -1,31 +1,62 @@
 package dialog;
 
+import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Dimension;
+import java.awt.FlowLayout;
 import java.awt.Toolkit;
-import java.io.IOException;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.StringReader;
+import java.util.concurrent.ExecutionException;
 
 import javax.swing.ImageIcon;
+import javax.swing.JButton;
 import javax.swing.JDialog;
 import javax.swing.JEditorPane;
+import javax.swing.JLabel;
 import javax.swing.JOptionPane;
+import javax.swing.JPanel;
 import javax.swing.JScrollPane;
+import javax.swing.JTextField;
+import javax.swing.SwingWorker;
 import javax.swing.UIManager;
-import javax.swing.text.BadLocationException;
 import javax.swing.text.html.HTMLDocument;
 import javax.swing.text.html.HTMLEditorKit;
 import javax.swing.text.html.StyleSheet;
 
+/**
+ * Displays a report one page of patients at a time. Only the page being
+ * displayed is ever held, so the memory used doesn't grow with the size of
+ * the report. Pages are read from a {@link PageSource} on a background thread.
+ * 
+ * @author Alan Sheehan - R00111909
+ */
 public class ReportDialog extends JDialog {
 	
 	private static final long serialVersionUID = 1L;
 	
+	private static final int PAGE_SIZE = 25;
+	
+	
+	private PageSource source;
+	private int page, pageCount;
+	
+	private SwingWorker<HTMLDocument, Void> loader;
+	private SwingWorker<Integer, Void> finder;
+	
 	
 	private JEditorPane reportDisplay;
 	
 	private HTMLEditorKit html;
-	private HTMLDocument doc;
-	private StyleSheet css;
+	
+	private JButton previousButton, nextButton, findButton;
+	
+	private JLabel pageLabel;
+	
+	private JTextField findField;
+	
+	private JPanel navigationContainer;
 	
 	
 	/**
@@ -37,9 +68,32 @@ public class ReportDialog extends JDialog {
 		reportDisplay.setBackground(new Color(248, 248, 248));
 		reportDisplay.setEditable(false);
 		
+		html = new HTMLEditorKit();
+		reportDisplay.setEditorKit(html);
+		
+		
+		// creating navigation components
+		previousButton = new JButton("<");
+		nextButton = new JButton(">");
+		pageLabel = new JLabel();
+		
+		findField = new JTextField(10);
+		findField.setToolTipText("Patient name or ID");
+		findButton = new JButton("Find");
+		
+		navigationContainer = new JPanel(new FlowLayout());
+		navigationContainer.add(previousButton);
+		navigationContainer.add(pageLabel);
+		navigationContainer.add(nextButton);
+		navigationContainer.add(findField);
+		navigationContainer.add(findButton);
+		
 		
 		JScrollPane scrollpane = new JScrollPane(reportDisplay);
-		getContentPane().add(scrollpane);
+		
+		getContentPane().setLayout(new BorderLayout());
+		getContentPane().add(navigationContainer, BorderLayout.NORTH);
+		getContentPane().add(scrollpane, BorderLayout.CENTER);
 		
 		
 		Dimension screenSize = Toolkit.getDefaultToolkit().getScreenSize();
@@ -49,19 +103,29 @@ public class ReportDialog extends JDialog {
 		setModal(true);
 		setResizable(false);
 		setIconImage(((ImageIcon)UIManager.getIcon("FileView.fileIcon")).getImage());
+		setListeners();
 		
 	}
 	
 	
 	/**
 	 * Used to display the dialog. Remains open until the user closes it.
+	 * 
+	 * @param source the pages of the report are read from
 	 */
-	public void showDialog (){
+	public void showDialog (PageSource source){
 		
-		if (reportDisplay.getText().isEmpty()){
+		this.source = source;
+		
+		int patients = source.getPatientCount();
+		
+		if (patients == 0){
 			JOptionPane.showMessageDialog(null, "Report contains to entries", "Empty Report", JOptionPane.INFORMATION_MESSAGE);
+			dispose();
 		}
 		else {
+			pageCount = (patients + PAGE_SIZE - 1) / PAGE_SIZE;
+			showPage(0);
 			setVisible(true);
 		}
 		
@@ -69,32 +133,201 @@ public class ReportDialog extends JDialog {
 	
 	
 	/**
-	 * Appends html to the end of the dialog's display.
+	 * Reads & displays the given page of the report. Any page still being
+	 * read is abandoned.
 	 * 
-	 * @param content html to be added to the dialog
-	 * @throws BadLocationException
-	 * @throws IOException
+	 * @param index of the page
 	 */
-	public void appendTo (String content) throws BadLocationException, IOException {
+	private void showPage (int index){
+		
+		page = Math.max(0, Math.min(index, pageCount - 1));
+		
+		if (loader != null){
+			loader.cancel(false);
+		}
 		
-		if (reportDisplay.getText().isEmpty()){
-			html = new HTMLEditorKit();
-			reportDisplay.setEditorKit(html);
+		pageLabel.setText("Page " + (page + 1) + " of " + pageCount);
+		previousButton.setEnabled(page > 0);
+		nextButton.setEnabled(page < pageCount - 1);
+		
+		final int first = page * PAGE_SIZE;
+		
+		loader = new SwingWorker<HTMLDocument, Void>() {
+			
+			@Override
+			protected HTMLDocument doInBackground() throws Exception {
+				return render(source.getPage(first, PAGE_SIZE));
+			}
 			
-			doc = (HTMLDocument) reportDisplay.getDocument();
-			css = html.getStyleSheet();
-			initStyleSheet();
+			@Override
+			protected void done() {
+				
+				if (isCancelled()){
+					return;
+				}
+				
+				try {
+					
+					reportDisplay.setDocument(get());
+					reportDisplay.setCaretPosition(0);
+					
+				} catch (InterruptedException e){
+					
+					Thread.currentThread().interrupt();
+					
+				} catch (ExecutionException e){
+					
+					JOptionPane.showMessageDialog(null, "Error in generating the report:\n" + e.getCause(), 
+							"Critical Error", JOptionPane.ERROR_MESSAGE);
+					
+				}
+				
+			}
+			
+		};
+		
+		loader.execute();
+		
+	}
+	
+	
+	/**
+	 * Finds the given patient on a background thread & displays the page
+	 * containing them. Any search still running is abandoned.
+	 * 
+	 * @param patient the ID or name of a patient
+	 */
+	private void find (final String patient){
+		
+		if (finder != null){
+			finder.cancel(false);
 		}
 		
-		html.insertHTML(doc, doc.getLength(), content, 0, 0, null);
+		finder = new SwingWorker<Integer, Void>() {
+			
+			@Override
+			protected Integer doInBackground() throws Exception {
+				return source.indexOf(patient);
+			}
+			
+			@Override
+			protected void done() {
+				
+				if (isCancelled()){
+					return;
+				}
+				
+				try {
+					
+					int index = get();
+					
+					if (index < 0){
+						JOptionPane.showMessageDialog(ReportDialog.this, "No patient in the report matches \"" + patient + "\".", 
+								"Not Found", JOptionPane.INFORMATION_MESSAGE);
+					}
+					else {
+						showPage(index / PAGE_SIZE);
+					}
+					
+				} catch (InterruptedException e){
+					
+					Thread.currentThread().interrupt();
+					
+				} catch (ExecutionException e){
+					
+					JOptionPane.showMessageDialog(null, "Error in finding the patient:\n" + e.getCause(), 
+							"Critical Error", JOptionPane.ERROR_MESSAGE);
+					
+				}
+				
+			}
+			
+		};
+		
+		finder.execute();
+		
+	}
+	
+	
+	/**
+	 * Builds a styled document from the html of a page in a single pass.
+	 * 
+	 * @param content html of the page
+	 * @return the document
+	 */
+	private HTMLDocument render (String content) throws Exception {
+		
+		// the document has its own copy of the kit's style sheet
+		HTMLDocument document = (HTMLDocument) html.createDefaultDocument();
+		initStyleSheet(document.getStyleSheet());
+		
+		html.read(new StringReader(content), document, 0);
+		
+		return document;
+		
+	}
+	
+	
+	/**
+	 * Sets up all necessary listeners.
+	 */
+	private void setListeners (){
+		
+		
+		// moving to the previous page
+		previousButton.addActionListener(new ActionListener() {
+			
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				
+				showPage(page - 1);
+				
+			}
+			
+		});
+		
+		
+		// moving to the next page
+		nextButton.addActionListener(new ActionListener() {
+			
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				
+				showPage(page + 1);
+				
+			}
+			
+		});
+		
+		
+		// jumping to the page containing the patient entered
+		ActionListener find = new ActionListener() {
+			
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				
+				String patient = findField.getText().trim();
+				
+				if (!patient.isEmpty()){
+					find(patient);
+				}
+				
+			}
+			
+		};
+		
+		findButton.addActionListener(find);
+		findField.addActionListener(find);
 		
 	}
 	
 	
 	/**
 	 * Adds the styling rules to the CSS Stylesheet.
+	 * 
+	 * @param css the style sheet of a report's document
 	 */
-	private void initStyleSheet (){
+	private void initStyleSheet (StyleSheet css){
 		
 		css.addRule("body {color: #535353; "
 				+ "padding: 10px;}");
@@ -122,4 +355,42 @@ public class ReportDialog extends JDialog {
 		
 	}
 	
+	
+	/**
+	 * Supplies the pages of a report to a {@link ReportDialog}. The patients in
+	 * the report are numbered from 0 in the order they're displayed.
+	 * 
+	 * @author Alan Sheehan - R00111909
+	 */
+	public interface PageSource {
+		
+		/**
+		 * Counts the patients in the report.
+		 * 
+		 * @return the number of patients in the report
+		 */
+		int getPatientCount();
+		
+		/**
+		 * Builds the html of a range of patients in the report. Called on a
+		 * background thread.
+		 * 
+		 * @param first the number of the first patient in the range
+		 * @param count the greatest number of patients in the range
+		 * @return the html of the patients
+		 */
+		String getPage(int first, int count);
+		
+		/**
+		 * Finds the first patient in the report matching the given text, 
+		 * either the patient's ID or the start of their name. Called on a
+		 * background thread.
+		 * 
+		 * @param patient the ID or name of a patient
+		 * @return the number of the patient in the report, -1 if no patient matches
+		 */
+		int indexOf(String patient);
+		
+	}
+	
 }
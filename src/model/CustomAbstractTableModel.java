@@ -1,6 +1,7 @@
 package model;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 
 import javax.swing.table.AbstractTableModel;
 
@@ -68,4 +69,144 @@ public abstract class CustomAbstractTableModel <E> extends AbstractTableModel {
 	 */
 	public abstract void setData(ArrayList<E> data);
 	
+	/**
+	 * Returns the id of the given value, which identifies it across reloads
+	 * of the data.
+	 * 
+	 * @param value whose id is returned
+	 * @return the id of the value
+	 */
+	protected abstract int getID(E value);
+	
+	
+	/**
+	 * Changes the given rows to match the data passed in. Rows are matched by 
+	 * {@link #getID(Object) id}, & an event is fired for each run of rows
+	 * deleted, inserted or changed, so that a table keeps its selection & only
+	 * re-sorts the rows affected. If the rows kept aren't in the same order in
+	 * both lists, the whole table is replaced instead.
+	 * 
+	 * @param rows the data of the model, changed in place
+	 * @param data the rows are changed to match
+	 */
+	protected void replaceRows(ArrayList<E> rows, ArrayList<E> data){
+		
+		if (rows == data){
+			fireTableDataChanged();
+			return;
+		}
+		
+		HashMap<Integer, Integer> positions = new HashMap<Integer, Integer>();
+		
+		for (int i = 0 ; i < data.size() ; i++){
+			positions.put(getID(data.get(i)), i);
+		}
+		
+		// checking the rows kept are in the same order
+		int last = -1;
+		
+		for (E row : rows){
+			
+			Integer position = positions.get(getID(row));
+			
+			if (position != null){
+				
+				if (position <= last){
+					rows.clear();
+					rows.addAll(data);
+					fireTableDataChanged();
+					return;
+				}
+				
+				last = position;
+				
+			}
+			
+		}
+		
+		// deleting rows no longer in the data, from the end so the indexes of the rows before are unchanged
+		int end = -1;
+		
+		for (int i = rows.size() - 1 ; i >= -1 ; i--){
+			
+			boolean deleted = i >= 0 && !positions.containsKey(getID(rows.get(i)));
+			
+			if (deleted && end < 0){
+				end = i;
+			}
+			else if (!deleted && end >= 0){
+				rows.subList(i + 1, end + 1).clear();
+				fireTableRowsDeleted(i + 1, end);
+				end = -1;
+			}
+			
+		}
+		
+		// walking both lists together, inserting new rows & replacing kept ones
+		int columns = getColumnCount();
+		int inserted = -1, updated = -1;
+		int i = 0;
+		
+		for (E value : data){
+			
+			if (i < rows.size() && getID(rows.get(i)) == getID(value)){
+				
+				if (inserted >= 0){
+					fireTableRowsInserted(inserted, i - 1);
+					inserted = -1;
+				}
+				
+				Object[] before = new Object[columns];
+				
+				for (int column = 0 ; column < columns ; column++){
+					before[column] = getValueAt(i, column);
+				}
+				
+				rows.set(i, value);
+				
+				boolean changed = false;
+				
+				for (int column = 0 ; column < columns && !changed ; column++){
+					Object after = getValueAt(i, column);
+					changed = before[column] == null ? after != null : !before[column].equals(after);
+				}
+				
+				if (changed && updated < 0){
+					updated = i;
+				}
+				else if (!changed && updated >= 0){
+					fireTableRowsUpdated(updated, i - 1);
+					updated = -1;
+				}
+				
+			}
+			else {
+				
+				if (updated >= 0){
+					fireTableRowsUpdated(updated, i - 1);
+					updated = -1;
+				}
+				
+				rows.add(i, value);
+				
+				if (inserted < 0){
+					inserted = i;
+				}
+				
+			}
+			
+			i++;
+			
+		}
+		
+		if (inserted >= 0){
+			fireTableRowsInserted(inserted, i - 1);
+		}
+		
+		if (updated >= 0){
+			fireTableRowsUpdated(updated, i - 1);
+		}
+		
+	}
+	
 }
@@ -1,65 +1,136 @@
 package model;
 
+import java.util.Arrays;
+
 import javax.swing.DefaultComboBoxModel;
 
 /**
- * An implementation of the ComboBoxModel for Procedures.
+ * An implementation of the ComboBoxModel for Procedures. Shows a single
+ * snapshot of the {@link ProcedureList}, & moves on to each new snapshot
+ * when added as a {@link ProcedureList.Listener listener}.
+ * 
+ * Only the procedures matching the {@link #setFilter(String) filter} are
+ * shown, so that a long list can be narrowed down as the user types. Each
+ * change is reported to the combo-box as the rows removed, added & changed,
+ * rather than as the whole list changing.
  * 
  * @author Alan Sheehan - R00111909
  */
-public class CustomComboBoxModel extends DefaultComboBoxModel<Procedure> {
+public class CustomComboBoxModel extends DefaultComboBoxModel<Procedure> implements ProcedureList.Listener {
 
 	private static final long serialVersionUID = -8389686249224234929L;
 	
 	private ProcedureList procedureList;
 	
+	private String filter = "";
+	
+	// the positions in the snapshot of the procedures shown, in order
+	private int[] matches = new int[0];
+	
 	@Override
 	public Procedure getElementAt(int index) {
-		return procedureList.get(index);
+		return procedureList.get(matches[index]);
 	}
 
 	@Override
 	public int getSize() {
-		return procedureList.size();
+		return matches.length;
 	}
 
+	@Override
+	public int getIndexOf(Object anObject) {
+		
+		if (!(anObject instanceof Procedure)){
+			return -1;
+		}
+		
+		int position = procedureList.indexOf((Procedure) anObject);
+		int index = position < 0 ? -1 : Arrays.binarySearch(matches, position);
+		
+		return index < 0 ? -1 : index;
+		
+	}
+	
+	@Override
+	public void procedureListChanged(ProcedureList procedures) {
+		setData(procedures);
+	}
 
 	/**
-	 * Adds a new procedure to the list
+	 * Sets the list
 	 * 
-	 * @param procedure to be added
+	 * @param procedureList the snapshot to be shown
 	 */
-	public void addProcedure(Procedure procedure){
-		procedureList.add(procedure);
-		fireContentsChanged(this, 0, procedureList.size());
+	public void setData(ProcedureList procedureList){
+		show(procedureList, procedureList.search(filter));
 	}
 	
 	/**
-	 * Removes a procedure from the list
+	 * Shows only the procedures whose id, or any word of whose name, starts
+	 * with the given text.
 	 * 
-	 * @param index of procedure to be removed
+	 * @param filter the text typed so far, blank to show every procedure
 	 */
-	public void removeProcedure(int index){
-		procedureList.remove(index);
-		fireContentsChanged(this, 0, procedureList.size());
+	public void setFilter(String filter){
+		
+		this.filter = filter;
+		show(procedureList, procedureList.search(filter));
+		
 	}
 	
+	
 	/**
-	 * Clears all procedures from the list
-	 */
-	public void clear(){
-		procedureList.clear();
-		fireContentsChanged(this, 0, procedureList.size());
-	}
-
-	/**
-	 * Sets the list
+	 * Shows the given procedures of a snapshot, & tells the combo-box which
+	 * rows changed. Rows at the start showing the same procedure as before
+	 * are left out of the change, as are the rows past the end of the shorter
+	 * of the two lists - which are reported as added or removed instead. If
+	 * the selected procedure is no longer shown, the first procedure shown is
+	 * selected in its place.
 	 * 
-	 * @param procedureList the list to be set
+	 * @param procedures the snapshot
+	 * @param positions of the procedures to be shown
 	 */
-	public void setData(ProcedureList procedureList){
-		this.procedureList = procedureList;
-		fireContentsChanged(this, 0, procedureList.size());
+	private void show(ProcedureList procedures, int[] positions){
+		
+		ProcedureList previousList = procedureList;
+		int[] previous = matches;
+		int shared = Math.min(previous.length, positions.length);
+		int first = 0;
+		
+		while (first < shared && previousList.get(previous[first]) == procedures.get(positions[first])){
+			first++;
+		}
+		
+		procedureList = procedures;
+		matches = positions;
+		
+		if (positions.length < previous.length){
+			fireIntervalRemoved(this, positions.length, previous.length - 1);
+		}
+		else if (positions.length > previous.length){
+			fireIntervalAdded(this, previous.length, positions.length - 1);
+		}
+		
+		if (first < shared){
+			fireContentsChanged(this, first, shared - 1);
+		}
+		
+		if (getIndexOf(getSelectedItem()) < 0){
+			setSelectedItem(positions.length > 0 ? getElementAt(0) : null);
+		}
+		
+	}
+	
+	
+	
+	// GETTERS
+	
+	public ProcedureList getData(){
+		return procedureList;
+	}
+	
+	public String getFilter(){
+		return filter;
 	}
 	
 }
@@ -0,0 +1,156 @@
+package model;
+
+
+/**
+ * Amounts of money are held as a whole number of cents in a long, so that
+ * they add up exactly & are never rounded. Converts amounts to & from the
+ * text they're entered & displayed as.
+ * 
+ * @author Alan Sheehan - R00111909
+ */
+public final class Money {
+	
+	private static final char EURO = '';
+	
+	// the most digits the euro of an amount may have without overflowing a long of cents
+	private static final int MAX_EURO_DIGITS = 16;
+	
+	
+	/**
+	 * Default constructor set to private - only the static methods are used.
+	 */
+	private Money(){}
+	
+	
+	/**
+	 * Parses an amount of euro as entered, such as "12", "12.5", "-3.20" or
+	 * "1,234.56". Anything past two decimal places is rounded half up.
+	 * 
+	 * @param text the amount as entered
+	 * @return the amount in cents
+	 * @throws NumberFormatException if the text isn't an amount of euro
+	 */
+	public static long parse(String text) throws NumberFormatException {
+		
+		String amount = text.trim();
+		boolean negative = amount.startsWith("-");
+		
+		if (negative){
+			amount = amount.substring(1).trim();
+		}
+		
+		if (!amount.isEmpty() && amount.charAt(0) == EURO){
+			amount = amount.substring(1).trim();
+		}
+		
+		amount = amount.replace(",", "");
+		
+		int point = amount.indexOf('.');
+		String euro = point < 0 ? amount : amount.substring(0, point);
+		String cents = point < 0 ? "" : amount.substring(point + 1);
+		
+		if ((euro.isEmpty() && cents.isEmpty()) || euro.length() > MAX_EURO_DIGITS || !isDigits(euro) || !isDigits(cents)){
+			throw new NumberFormatException("Not an amount of euro: \"" + text + "\"");
+		}
+		
+		long value = euro.isEmpty() ? 0 : Long.parseLong(euro) * 100;
+		
+		for (int i = 0 ; i < 2 ; i++){
+			value += (i < cents.length() ? cents.charAt(i) - '0' : 0) * (i == 0 ? 10 : 1);
+		}
+		
+		if (cents.length() > 2 && cents.charAt(2) >= '5'){
+			value++;
+		}
+		
+		return negative ? -value : value;
+		
+	}
+	
+	/**
+	 * Formats an amount for display, such as "1,234.56".
+	 * 
+	 * @param cents the amount in cents
+	 * @return the amount in euro, with the euro sign & thousands separated
+	 */
+	public static String format(long cents){
+		
+		StringBuilder text = new StringBuilder(16);
+		String euro = Long.toString(Math.abs(cents / 100));
+		
+		if (cents < 0){
+			text.append('-');
+		}
+		
+		text.append(EURO);
+		
+		for (int i = 0 ; i < euro.length() ; i++){
+			
+			if (i > 0 && (euro.length() - i) % 3 == 0){
+				text.append(',');
+			}
+			
+			text.append(euro.charAt(i));
+			
+		}
+		
+		return appendCents(text, cents).toString();
+		
+	}
+	
+	/**
+	 * Formats an amount as it's entered, such as "1234.56", so that it can
+	 * be edited & {@link #parse(String) parsed} again.
+	 * 
+	 * @param cents the amount in cents
+	 * @return the amount in euro, without the euro sign or thousands separators
+	 */
+	public static String toPlainString(long cents){
+		
+		StringBuilder text = new StringBuilder(16);
+		
+		if (cents < 0){
+			text.append('-');
+		}
+		
+		text.append(Math.abs(cents / 100));
+		
+		return appendCents(text, cents).toString();
+		
+	}
+	
+	
+	/**
+	 * Appends the decimal point & cents of an amount.
+	 * 
+	 * @param text the euro have been appended to
+	 * @param cents the amount in cents
+	 * @return the text appended to
+	 */
+	private static StringBuilder appendCents(StringBuilder text, long cents){
+		
+		long remainder = Math.abs(cents % 100);
+		
+		return text.append('.').append(remainder < 10 ? "0" : "").append(remainder);
+		
+	}
+	
+	/**
+	 * Returns whether the given text is made up of digits only.
+	 * 
+	 * @param text to check
+	 * @return true if every character is a digit, or the text is empty, false otherwise
+	 */
+	private static boolean isDigits(String text){
+		
+		for (int i = 0 ; i < text.length() ; i++){
+			if (text.charAt(i) < '0' || text.charAt(i) > '9'){
+				return false;
+			}
+		}
+		
+		return true;
+		
+	}
+	
+}
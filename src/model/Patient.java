@@ -9,6 +9,7 @@ import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlElementWrapper;
+import javax.xml.bind.annotation.XmlTransient;
 import javax.xml.bind.annotation.XmlType;
 
 
@@ -49,6 +50,11 @@ public class Patient implements Serializable, Comparable<Patient> {
 	private ArrayList<Procedure> patientProcedureList;
 	
 	
+	// amount owed as kept by the database, not saved to XML as it can be worked out from the lists
+	@XmlTransient
+	private long balance;
+	
+	
 	/**
 	 * Default constructor set to private - used by JAXB only.
 	 */
@@ -165,22 +171,27 @@ public class Patient implements Serializable, Comparable<Patient> {
 	
 	/**
 	 * Gets the amount of money owed by the patient based on the procedures
-	 * scheduled and the payments made.
+	 * scheduled and the payments made. Walks both lists - patients read from
+	 * the database already carry this amount as their {@link #getBalance() balance}.
 	 * 
-	 * @return the amount the patient owes
+	 * @return the amount the patient owes in cents
 	 */
-	public double getAmountOwed (){
+	public long getAmountOwed (){
+		
+		long owed = 0;
+		long payed = 0;
 		
-		double owed = 0;
-		double payed = 0;
+		// indexed rather than iterated, so that summing the lists creates no objects
+		ArrayList<Procedure> procedures = getPatientProcedureList();
+		ArrayList<Payment> payments = getPatientPaymentList();
 		
-		for (Procedure p : getPatientProcedureList()){
-			owed += p.getProcedureCost();
+		for (int i = 0 ; i < procedures.size() ; i++){
+			owed += procedures.get(i).getProcedureCost();
 		}
 		
-		for (Payment p : getPatientPaymentList()){
-			if (p.getPaymentStatus()){
-				payed += p.getPaymentAmount();
+		for (int i = 0 ; i < payments.size() ; i++){
+			if (payments.get(i).getPaymentStatus()){
+				payed += payments.get(i).getPaymentAmount();
 			}
 		}
 		
@@ -220,7 +231,8 @@ public class Patient implements Serializable, Comparable<Patient> {
 	
 	
 	/**
-	 * Compares two Patient objects based on the amount they owe.
+	 * Compares two Patient objects based on the amount they owe, as given by
+	 * their balance.
 	 * 
 	 * @author Alan Sheehan - R0011909
 	 */
@@ -229,10 +241,7 @@ public class Patient implements Serializable, Comparable<Patient> {
 		@Override
 		public int compare(Patient first, Patient second) {
 			
-			Double d1 = first.getAmountOwed();
-			Double d2 = second.getAmountOwed();
-			
-			return d1.compareTo(d2);
+			return Long.compare(first.getBalance(), second.getBalance());
 			
 		}
 		
@@ -306,4 +315,14 @@ public class Patient implements Serializable, Comparable<Patient> {
 		this.patientProcedureList = patientProcedureList;
 	}
 
+	
+	
+	public long getBalance() {
+		return balance;
+	}
+
+	public void setBalance(long balance) {
+		this.balance = balance;
+	}
+	
 }
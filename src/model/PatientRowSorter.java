@@ -0,0 +1,116 @@
+package model;
+
+import java.util.Collections;
+import java.util.List;
+
+import javax.swing.RowSorter;
+import javax.swing.SortOrder;
+
+/**
+ * Sorts a patient table by having its {@link PatientTableModel} read the
+ * patients in order, rather than by reading every row into the table. The
+ * rows of the table are always in the same order as those of the model.
+ * 
+ * @author Alan Sheehan - R00111909
+ */
+public class PatientRowSorter extends RowSorter<PatientTableModel> {
+	
+	private PatientTableModel model;
+	
+	private List<SortKey> sortKeys = Collections.emptyList();
+	
+	
+	/**
+	 * Constructor which takes in the model to be sorted.
+	 * 
+	 * @param model to be sorted
+	 */
+	public PatientRowSorter(PatientTableModel model){
+		this.model = model;
+	}
+	
+	
+	@Override
+	public PatientTableModel getModel() {
+		return model;
+	}
+	
+	@Override
+	public void toggleSortOrder(int column) {
+		
+		SortOrder order = SortOrder.ASCENDING;
+		
+		if (!sortKeys.isEmpty() && sortKeys.get(0).getColumn() == column
+				&& sortKeys.get(0).getSortOrder() == SortOrder.ASCENDING){
+			order = SortOrder.DESCENDING;
+		}
+		
+		setSortKeys(Collections.singletonList(new SortKey(column, order)));
+		
+	}
+	
+	@Override
+	public void setSortKeys(List<? extends SortKey> keys) {
+		
+		// only the first key is used, ties are always broken by ID
+		if (keys == null || keys.isEmpty() || keys.get(0).getSortOrder() == SortOrder.UNSORTED){
+			sortKeys = Collections.emptyList();
+			model.sort(0, true);
+		}
+		else {
+			sortKeys = Collections.singletonList(keys.get(0));
+			model.sort(keys.get(0).getColumn(), keys.get(0).getSortOrder() == SortOrder.ASCENDING);
+		}
+		
+		fireSortOrderChanged();
+		
+	}
+	
+	@Override
+	public List<? extends SortKey> getSortKeys() {
+		return sortKeys;
+	}
+	
+	
+	@Override
+	public int convertRowIndexToModel(int index) {
+		return index;
+	}
+	
+	@Override
+	public int convertRowIndexToView(int index) {
+		return index;
+	}
+	
+	@Override
+	public int getViewRowCount() {
+		return model.getRowCount();
+	}
+	
+	@Override
+	public int getModelRowCount() {
+		return model.getRowCount();
+	}
+	
+	
+	// the model keeps its rows in order itself
+	
+	@Override
+	public void modelStructureChanged() {}
+	
+	@Override
+	public void allRowsChanged() {}
+	
+	@Override
+	public void rowsInserted(int firstRow, int endRow) {}
+	
+	@Override
+	public void rowsDeleted(int firstRow, int endRow) {}
+	
+	@Override
+	public void rowsUpdated(int firstRow, int endRow) {}
+	
+	@Override
+	public void rowsUpdated(int firstRow, int endRow, int column) {}
+	
+}
@@ -1,36 +1,49 @@
 package model;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import javax.swing.table.AbstractTableModel;
 
 /**
- * A table model for Patient objects.
+ * A table model for Patient objects. Only the blocks of rows around those
+ * being displayed are held in memory - each block is read from a
+ * {@link Source} when one of its rows is first needed, & the least recently
+ * used blocks are discarded once too many are held. The patients are ordered
+ * by the database rather than the table, see {@link PatientRowSorter}.
  * 
  * @author Alan Sheehan - R00111909
  */
-public class PatientTableModel extends CustomAbstractTableModel<Patient> {
+public class PatientTableModel extends AbstractTableModel {
 	
 	private static final long serialVersionUID = -6235450858756700465L;
 	
-	private String[] headers = {"#", "Name", "Address", "Phone #"};
-	private ArrayList<Patient> patientList;
+	private static final int BLOCK_SIZE = 100;
+	private static final int RESIDENT_BLOCKS = 10;
 	
+	private String[] headers = {"#", "Name", "Address", "Phone #", "Balance"};
+	
+	private Source source;
+	private int rowCount;
+	
+	private int sortColumn = 0;
+	private boolean ascending = true;
+	
+	// blocks of rows by number, in order of least recently used
+	private LinkedHashMap<Integer, ArrayList<Patient>> blocks = new LinkedHashMap<Integer, ArrayList<Patient>>(16, 0.75f, true);
 	
-	/**
-	 * The default constructor which calls {@link #PatientTableModel(ArrayList)} with
-	 * an empty ArrayList if none is given.
-	 */
-	public PatientTableModel(){
-		this(new ArrayList<Patient>());
-	}
 	
 	/**
-	 * Constructor which takes in an ArrayList of Patients and assigns it as the data.
+	 * Constructor which takes in the source the patients are read from.
 	 * 
-	 * @param data the ArrayList of Patients
+	 * @param source the patients are read from
 	 */
-	public PatientTableModel(ArrayList<Patient> data){
+	public PatientTableModel(Source source){
 		super();
-		setData(data);
+		this.source = source;
+		this.rowCount = source.countPatients();
 	}
 	
 	
@@ -45,28 +58,35 @@ public class PatientTableModel extends CustomAbstractTableModel<Patient> {
 		if (column == 0){
 			return Integer.class;
 		}
+		else if (column == 4){
+			return Long.class;
+		}
 		else {
 			return String.class;
 		}
 		
 	}
-
+	
 	@Override
 	public int getRowCount() {
-		return patientList.size();
+		return rowCount;
 	}
 	
 	@Override
 	public String getColumnName(int column) {
 		return headers[column];
 	}
-
+	
 	@Override
 	public Object getValueAt(int row, int column) {
 		
 		Object value = null;
 		Patient patient = get(row);
 		
+		if (patient == null){
+			return null;
+		}
+		
 		switch(column){
 		case 0:
 			value = patient.getPatientNo();
@@ -80,6 +100,9 @@ public class PatientTableModel extends CustomAbstractTableModel<Patient> {
 		case 3:
 			value = patient.getPatientPhone();
 			break;
+		case 4:
+			value = patient.getBalance();
+			break;
 		}
 		
 		return value;
@@ -87,49 +110,256 @@ public class PatientTableModel extends CustomAbstractTableModel<Patient> {
 	}
 	
 	
-	@Override
-	public void add(Patient value) {
-		patientList.add(value);	
-		fireTableDataChanged();
-	}
-
-	@Override
+	/**
+	 * Retrieves the patient at a specified row, reading the block containing
+	 * the row if it isn't held.
+	 * 
+	 * @param index of the row
+	 * @return the patient in the row, null if it couldn't be read
+	 */
 	public Patient get(int index) {
-		return patientList.get(index);
+		
+		int block = index / BLOCK_SIZE;
+		ArrayList<Patient> patients = blocks.get(block);
+		
+		if (patients == null){
+			patients = load(block);
+		}
+		
+		index -= block * BLOCK_SIZE;
+		
+		return index < patients.size() ? patients.get(index) : null;
+		
 	}
 	
-	@Override
-	public void set(int index, Patient value) {
-		patientList.set(index, value);
-		fireTableDataChanged();
+	/**
+	 * Reads a block of rows. When a block next to it is held, the block is
+	 * read by seeking from that block's last or first patient, so the rows
+	 * before it are never counted. Otherwise it is read by its position.
+	 * 
+	 * @param block number of the block
+	 * @return the patients in the block
+	 */
+	private ArrayList<Patient> load(int block) {
+		
+		ArrayList<Patient> patients;
+		ArrayList<Patient> previous = blocks.get(block - 1);
+		ArrayList<Patient> next = blocks.get(block + 1);
+		
+		if (previous != null && previous.size() == BLOCK_SIZE){
+			patients = source.readPatients(sortColumn, ascending, previous.get(BLOCK_SIZE - 1), BLOCK_SIZE);
+		}
+		else if (next != null && !next.isEmpty()){
+			// reading backwards from the block after
+			patients = source.readPatients(sortColumn, !ascending, next.get(0), BLOCK_SIZE);
+			Collections.reverse(patients);
+		}
+		else {
+			patients = source.readPatients(sortColumn, ascending, block * BLOCK_SIZE, BLOCK_SIZE);
+		}
+		
+		blocks.put(block, patients);
+		
+		// discarding the least recently used blocks
+		Iterator<Integer> eldest = blocks.keySet().iterator();
+		
+		while (blocks.size() > RESIDENT_BLOCKS){
+			eldest.next();
+			eldest.remove();
+		}
+		
+		return patients;
+		
 	}
 	
-	@Override
+	/**
+	 * Discards every held block which contains or follows the given row.
+	 * 
+	 * @param index of the first row which has changed
+	 */
+	private void invalidate(int index) {
+		
+		Iterator<Integer> block = blocks.keySet().iterator();
+		
+		while (block.hasNext()){
+			if (block.next() >= index / BLOCK_SIZE){
+				block.remove();
+			}
+		}
+		
+	}
+	
+	
+	/**
+	 * Adds a row for a patient which has been added to the source, at its
+	 * position in the current order.
+	 * 
+	 * @param patient added to the source
+	 */
+	public void add(Patient patient) {
+		
+		int index = find(patient);
+		
+		rowCount++;
+		invalidate(index);
+		fireTableRowsInserted(index, index);
+		
+	}
+	
+	/**
+	 * Updates the row of a patient whose details have changed in the source,
+	 * moving it if its position in the current order has changed.
+	 * 
+	 * @param index of the patient's row
+	 * @param patient whose details have changed
+	 */
+	public void set(int index, Patient patient) {
+		
+		int moved = find(patient);
+		
+		invalidate(Math.min(index, moved));
+		
+		if (moved == index){
+			fireTableRowsUpdated(index, index);
+		}
+		else {
+			fireTableRowsDeleted(index, index);
+			fireTableRowsInserted(moved, moved);
+		}
+		
+	}
+	
+	/**
+	 * Finds the row of a patient in the current order. The patient must be in
+	 * the source.
+	 * 
+	 * @param patient to search for
+	 * @return the index of the patient's row, -1 if it couldn't be found
+	 */
 	public int find(Patient patient){
-		return patientList.indexOf(patient);
+		return source.indexOf(patient, sortColumn, ascending);
 	}
-
-	@Override
+	
+	/**
+	 * Removes the row of a patient which has been removed from the source.
+	 * 
+	 * @param index of the row to be removed
+	 */
 	public void remove(int index) {
-		patientList.remove(index);
-		fireTableDataChanged();
+		
+		rowCount--;
+		invalidate(index);
+		fireTableRowsDeleted(index, index);
+		
 	}
-
-	@Override
-	public void clear() {
-		patientList.clear();
+	
+	/**
+	 * Discards every held row & counts the patients in the source again,
+	 * following a change affecting many patients.
+	 */
+	public void refresh() {
+		
+		rowCount = source.countPatients();
+		blocks.clear();
 		fireTableDataChanged();
+		
 	}
-
-	@Override
-	public void setData(ArrayList<Patient> data) {
-		patientList = data;
+	
+	/**
+	 * Orders the rows by the given column. Every held row is discarded, as
+	 * the rows are ordered by the source.
+	 * 
+	 * @param column the rows are ordered by
+	 * @param ascending whether the rows are in ascending order
+	 */
+	public void sort(int column, boolean ascending) {
+		
+		this.sortColumn = column;
+		this.ascending = ascending;
+		
+		blocks.clear();
 		fireTableDataChanged();
+		
 	}
 	
-	@Override
-	public String toString() {
-		return patientList.toString();
+	
+	
+	// GETTERS
+	
+	public int getSortColumn() {
+		return sortColumn;
 	}
-
+	
+	public boolean isAscending() {
+		return ascending;
+	}
+	
+	/**
+	 * Counts the rows currently held in memory.
+	 * 
+	 * @return the number of rows held
+	 */
+	public int getResidentRowCount() {
+		
+		int rows = 0;
+		
+		for (ArrayList<Patient> patients : blocks.values()){
+			rows += patients.size();
+		}
+		
+		return rows;
+		
+	}
+	
+	
+	/**
+	 * Supplies the patients displayed by a {@link PatientTableModel}. The
+	 * patients are ordered by one of the model's columns, with ties broken by
+	 * their IDs.
+	 * 
+	 * @author Alan Sheehan - R00111909
+	 */
+	public interface Source {
+		
+		/**
+		 * Counts the patients.
+		 * 
+		 * @return the number of patients
+		 */
+		int countPatients();
+		
+		/**
+		 * Reads the patients which follow the given patient in the given order.
+		 * 
+		 * @param column the patients are ordered by
+		 * @param ascending whether the patients are in ascending order
+		 * @param after the patient the patients read follow
+		 * @param count the greatest number of patients read
+		 * @return the patients
+		 */
+		ArrayList<Patient> readPatients(int column, boolean ascending, Patient after, int count);
+		
+		/**
+		 * Reads a range of the patients in the given order.
+		 * 
+		 * @param column the patients are ordered by
+		 * @param ascending whether the patients are in ascending order
+		 * @param first the position of the first patient in the range, counting from 0
+		 * @param count the greatest number of patients read
+		 * @return the patients
+		 */
+		ArrayList<Patient> readPatients(int column, boolean ascending, int first, int count);
+		
+		/**
+		 * Finds the position of the given patient in the given order.
+		 * 
+		 * @param patient to search for
+		 * @param column the patients are ordered by
+		 * @param ascending whether the patients are in ascending order
+		 * @return the position of the patient, counting from 0, -1 if it couldn't be found
+		 */
+		int indexOf(Patient patient, int column, boolean ascending);
+		
+	}
+	
 }
@@ -1,8 +1,6 @@
 package model;
 
 import java.io.Serializable;
-import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.util.Comparator;
 import java.util.Date;
 
@@ -22,7 +20,7 @@ public class Payment implements Serializable {
 	
 	
 	
-	public Payment(int id, double amount, boolean status, Date date){
+	public Payment(int id, long amount, boolean status, Date date){
 		setPaymentNo(id);
 		setPaymentAmount(amount);
 		setPaymentStatus(status);
@@ -39,8 +37,9 @@ public class Payment implements Serializable {
 	@XmlElement (name = "ID")
 	private int paymentNo;
 	
-	@XmlElement (name = "amount")
-	private double paymentAmount;
+	// the amount in cents
+	@XmlElement (name = "amountInCents")
+	private long paymentAmount;
 	
 	@XmlElement (name = "date")
 	private Date paymentDate;
@@ -57,12 +56,12 @@ public class Payment implements Serializable {
 	
 	
 	/**
-	 * Constructor which calls {@link #Payment(double, boolean)}
+	 * Constructor which calls {@link #Payment(long, boolean)}
 	 * with a default value of unpaid for the status.
 	 * 
-	 * @param amount of money
+	 * @param amount of money in cents
 	 */
-	public Payment(double amount){
+	public Payment(long amount){
 		
 		this(amount, false);
 		
@@ -72,10 +71,10 @@ public class Payment implements Serializable {
 	 * Constructor which takes both the amount and status of
 	 * the payment, paid or unpaid.
 	 * 
-	 * @param amount of money
+	 * @param amount of money in cents
 	 * @param status paid or unpaid
 	 */
-	public Payment(double amount, boolean status){
+	public Payment(long amount, boolean status){
 		setPaymentNo(uniquePaymentID);
 		setPaymentAmount(amount);
 		setPaymentDate(new Date());
@@ -87,7 +86,7 @@ public class Payment implements Serializable {
 	
 	@Override
 	public String toString() {
-		return paymentNo + "\t" + paymentAmount + "\t" + paymentDate + "\t" + paymentStatus;
+		return paymentNo + "\t" + Money.toPlainString(paymentAmount) + "\t" + paymentDate + "\t" + paymentStatus;
 	}
 	
 	
@@ -125,19 +124,13 @@ public class Payment implements Serializable {
 
 
 	
-	public double getPaymentAmount() {
+	public long getPaymentAmount() {
 		return paymentAmount;
 	}
 
 
-	public void setPaymentAmount(double paymentAmount) {
-		
-		// rounding the given value to two decimal places
-		BigDecimal bd = new BigDecimal(paymentAmount);
-		bd = bd.setScale(2, RoundingMode.HALF_UP);
-		
-		this.paymentAmount = bd.doubleValue();
-		
+	public void setPaymentAmount(long paymentAmount) {
+		this.paymentAmount = paymentAmount;
 	}
 
 
@@ -12,7 +12,7 @@ public class PaymentTableModel extends CustomAbstractTableModel<Payment> {
 	private static final long serialVersionUID = -8495420559534666122L;
 	
 	private String[] headers = {"#", "Amount Due", "Date", "Paid"};
-	private ArrayList<Payment> paymentList;
+	private ArrayList<Payment> paymentList = new ArrayList<Payment>();
 	
 	
 	/**
@@ -110,7 +110,7 @@ public class PaymentTableModel extends CustomAbstractTableModel<Payment> {
 	@Override
 	public void add(Payment value) {
 		paymentList.add(value);
-		fireTableDataChanged();
+		fireTableRowsInserted(paymentList.size() - 1, paymentList.size() - 1);
 	}
 
 	@Override
@@ -121,7 +121,7 @@ public class PaymentTableModel extends CustomAbstractTableModel<Payment> {
 	@Override
 	public void set(int index, Payment payment) {
 		paymentList.set(index, payment);
-		fireTableDataChanged();
+		fireTableRowsUpdated(index, index);
 	}
 	
 	@Override
@@ -132,19 +132,29 @@ public class PaymentTableModel extends CustomAbstractTableModel<Payment> {
 	@Override
 	public void remove(int index) {
 		paymentList.remove(index);
-		fireTableDataChanged();
+		fireTableRowsDeleted(index, index);
 	}
 
 	@Override
 	public void clear() {
-		paymentList.clear();
-		fireTableDataChanged();
+		
+		int rows = paymentList.size();
+		
+		if (rows > 0){
+			paymentList.clear();
+			fireTableRowsDeleted(0, rows - 1);
+		}
+		
 	}
 
 	@Override
 	public void setData(ArrayList<Payment> data) {
-		paymentList = data;
-		fireTableDataChanged();
+		replaceRows(paymentList, data);
+	}
+	
+	@Override
+	protected int getID(Payment value) {
+		return value.getPaymentNo();
 	}
 	
 	public ArrayList<Payment> getModel(){
@@ -1,9 +1,6 @@
 package model;
 
 import java.io.Serializable;
-import java.math.BigDecimal;
-import java.math.RoundingMode;
-import java.text.DecimalFormat;
 
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
@@ -15,7 +12,7 @@ import javax.xml.bind.annotation.XmlType;
 public class Procedure implements Serializable, Cloneable {
 	
 	
-	public Procedure(int id, String name, double price){
+	public Procedure(int id, String name, long price){
 		setProcedureNo(id);
 		setProcedureName(name);
 		setProcedureCost(price);
@@ -33,11 +30,9 @@ public class Procedure implements Serializable, Cloneable {
 	@XmlElement (name = "type")
 	private String procedureName;
 	
-	@XmlElement (name = "cost")
-	private double procedureCost;
-	
-	// not saved in XML
-	private transient DecimalFormat euro = new DecimalFormat("###,###.00");
+	// the cost in cents
+	@XmlElement (name = "costInCents")
+	private long procedureCost;
 	
 	
 	/**
@@ -52,9 +47,9 @@ public class Procedure implements Serializable, Cloneable {
 	 * and cost of the procedure.
 	 * 
 	 * @param procedureName name of the procedure
-	 * @param procedureCost cost of the procedure
+	 * @param procedureCost cost of the procedure in cents
 	 */
-	public Procedure(String procedureName, double procedureCost){
+	public Procedure(String procedureName, long procedureCost){
 		setProcedureName(procedureName);
 		setProcedureCost(procedureCost);
 		setProcedureNo(uniqueProcedureID);
@@ -65,7 +60,7 @@ public class Procedure implements Serializable, Cloneable {
 	
 	@Override
 	public String toString() {
-		return procedureNo + "\t" + procedureName + "\t" + procedureCost;
+		return procedureNo + "\t" + procedureName + "\t" + Money.toPlainString(procedureCost);
 	}
 	
 	
@@ -77,6 +72,10 @@ public class Procedure implements Serializable, Cloneable {
 	@Override
 	public boolean equals(Object obj) {
 		
+		if (!(obj instanceof Procedure)){
+			return false;
+		}
+		
 		Procedure p = (Procedure) obj;
 		
 		if (this.procedureName.equals(p.procedureName)){
@@ -116,22 +115,16 @@ public class Procedure implements Serializable, Cloneable {
 
 
 	
-	public double getProcedureCost() {
+	public long getProcedureCost() {
 		return procedureCost;
 	}
 
-	public void setProcedureCost(double procedureCost) {
-		
-		// rounding the given value to two decimal places
-		BigDecimal bd = new BigDecimal(procedureCost);
-		bd = bd.setScale(2, RoundingMode.HALF_UP);
-		
-		this.procedureCost = bd.doubleValue();
-		
+	public void setProcedureCost(long procedureCost) {
+		this.procedureCost = procedureCost;
 	}
 	
 	public String getProcedureCostInEuro(){
-		return euro.format(procedureCost);
+		return Money.format(procedureCost);
 	}
 
 }
@@ -1,27 +1,86 @@
 package model;
 
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.swing.SwingUtilities;
 
 /**
  * A singleton class providing access to all Procedures on the system.
  * 
+ * The procedures are published as a series of snapshots, each of which is
+ * never changed once published. A change to the procedures copies the latest
+ * snapshot, changes the copy & publishes it as the next version, so a reader
+ * holding a snapshot always sees every procedure of that version, without
+ * locking, however the procedures are changed meanwhile. Procedures may be
+ * changed on any thread, & {@link Listener listeners} are told of each new
+ * version on the event dispatch thread.
+ * 
+ * Each snapshot indexes its procedures by id & by name, so that a procedure
+ * is found without walking the list. The procedures themselves must not be
+ * changed once published - a changed procedure is {@link #put(Procedure) put}
+ * in place of the old one. Procedures may also be {@link #search(String)
+ * searched for} by the start of their id or of any word of their name.
+ * 
  * @author Alan Sheehan - R00111909
  */
-public class ProcedureList extends ArrayList<Procedure>{
+public final class ProcedureList implements Iterable<Procedure>, Serializable {
 
 	private static final long serialVersionUID = -584074620516313870L;
 	
-	private static ProcedureList list = new ProcedureList();
+	private static volatile ProcedureList list = new ProcedureList(0, new ArrayList<Procedure>());
+	
+	// the listeners told of each new version
+	private static CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+	
+	private final long version;
+	private final List<Procedure> procedures;
+	
+	// the position of each procedure by id, & the id of each procedure by normalised name
+	private final HashMap<Integer, Integer> positions = new HashMap<Integer, Integer>();
+	private final HashMap<String, Integer> names = new HashMap<String, Integer>();
+	
+	// built the first time the snapshot is searched
+	private transient volatile SearchIndex searchIndex;
 
 	
 	/**
-	 * Default constructor set to private to create singleton.
+	 * Constructor set to private, as snapshots are only created when the
+	 * procedures change.
+	 * 
+	 * @param version of the snapshot
+	 * @param procedures of the snapshot, which the snapshot takes ownership of
 	 */
-	private ProcedureList(){}
+	private ProcedureList(long version, ArrayList<Procedure> procedures){
+		
+		this.version = version;
+		this.procedures = Collections.unmodifiableList(procedures);
+		
+		for (int i = 0 ; i < procedures.size() ; i++){
+			
+			Procedure procedure = procedures.get(i);
+			String name = normalise(procedure.getProcedureName());
+			
+			positions.put(procedure.getProcedureNo(), i);
+			
+			// the first of any procedures sharing a name is found by it, as when walking the list
+			if (!names.containsKey(name)){
+				names.put(name, procedure.getProcedureNo());
+			}
+			
+		}
+		
+	}
 	
 	
 	/**
-	 * Retrieves the instance.
+	 * Retrieves the latest snapshot.
 	 * 
 	 * @return the list of Procedures
 	 */
@@ -36,26 +95,447 @@ public class ProcedureList extends ArrayList<Procedure>{
 	 * 
 	 * @param procedureList to be set
 	 */
-	public static void setProcedureList (ArrayList<Procedure> procedureList){
+	public static void setProcedureList (List<Procedure> procedureList){
 		
-		list.clear();
+		synchronized (ProcedureList.class){
+			publish(new ProcedureList(list.version + 1, new ArrayList<Procedure>(procedureList)));
+		}
 		
-		for (Procedure p : procedureList){
-			list.add(p);
+	}
+	
+	/**
+	 * Adds a procedure to the end of the list, or replaces the procedure with
+	 * the same id where it is in the list.
+	 * 
+	 * @param procedure added or changed
+	 */
+	public static void put(Procedure procedure){
+		
+		synchronized (ProcedureList.class){
+			
+			ArrayList<Procedure> procedures = new ArrayList<Procedure>(list.procedures);
+			Integer position = list.positions.get(procedure.getProcedureNo());
+			
+			if (position == null){
+				procedures.add(procedure);
+			}
+			else {
+				procedures.set(position, procedure);
+			}
+			
+			publish(new ProcedureList(list.version + 1, procedures));
+			
 		}
 		
 	}
 	
+	/**
+	 * Removes the procedure with the given id.
+	 * 
+	 * @param procedureID of the procedure
+	 * @return the procedure removed, null if there's no such procedure
+	 */
+	public static Procedure removeProcedure(int procedureID){
+		
+		synchronized (ProcedureList.class){
+			
+			Integer position = list.positions.get(procedureID);
+			
+			if (position == null){
+				return null;
+			}
+			
+			ArrayList<Procedure> procedures = new ArrayList<Procedure>(list.procedures);
+			Procedure procedure = procedures.remove(position.intValue());
+			
+			publish(new ProcedureList(list.version + 1, procedures));
+			
+			return procedure;
+			
+		}
+		
+	}
+	
+	/**
+	 * Adds a listener to be told of each new version of the procedures.
+	 * 
+	 * @param listener to be added
+	 */
+	public static void addListener(Listener listener){
+		listeners.add(listener);
+	}
+	
+	/**
+	 * Removes a listener added by {@link #addListener(Listener)}.
+	 * 
+	 * @param listener to be removed
+	 */
+	public static void removeListener(Listener listener){
+		listeners.remove(listener);
+	}
+	
+	/**
+	 * Normalises the name of a procedure for looking it up, ignoring case &
+	 * any extra spaces.
+	 * 
+	 * @param name of a procedure
+	 * @return the name in lower case, with single spaces between words
+	 */
+	public static String normalise(String name){
+		
+		StringBuilder normalised = new StringBuilder(name.length());
+		boolean space = false;
+		
+		for (int i = 0 ; i < name.length() ; i++){
+			
+			char c = name.charAt(i);
+			
+			if (Character.isWhitespace(c)){
+				space = normalised.length() > 0;
+			}
+			else {
+				
+				if (space){
+					normalised.append(' ');
+					space = false;
+				}
+				
+				normalised.append(Character.toLowerCase(c));
+				
+			}
+			
+		}
+		
+		return normalised.toString();
+		
+	}
+	
+	/**
+	 * Makes the given snapshot the latest & tells each listener. Called while
+	 * holding the lock every change is made under, so versions are published
+	 * in order.
+	 * 
+	 * @param snapshot to be published
+	 */
+	private static void publish(final ProcedureList snapshot){
+	
+		list = snapshot;
+		
+		Runnable notify = new Runnable() {
+			@Override
+			public void run() {
+		
+				// a listener told late is only told of the latest version, not each one it missed
+				if (snapshot != list){
+					return;
+				}
+		
+				for (Listener listener : listeners){
+					listener.procedureListChanged(snapshot);
+				}
+				
+			}
+		};
+		
+		if (SwingUtilities.isEventDispatchThread()){
+			notify.run();
+		}
+		else {
+			SwingUtilities.invokeLater(notify);
+		}
+		
+	}
+	
+	
+	/**
+	 * Finds the procedure with the given id.
+	 * 
+	 * @param procedureID of the procedure
+	 * @return the procedure, null if there's no such procedure
+	 */
+	public Procedure getProcedure(int procedureID){
+		
+		Integer position = positions.get(procedureID);
+		
+		return position == null ? null : procedures.get(position);
+		
+	}
+	
+	/**
+	 * Finds the procedure with the given name, however it's capitalised or
+	 * spaced.
+	 * 
+	 * @param name of the procedure
+	 * @return the procedure, null if there's no such procedure
+	 */
+	public Procedure getProcedure(String name){
+		
+		Integer procedureID = names.get(normalise(name));
+		
+		return procedureID == null ? null : getProcedure(procedureID);
+		
+	}
+	
+	/**
+	 * Finds the position of a procedure through the index of names, falling
+	 * back on walking the list only if a procedure's name differs from the
+	 * one given in case or spacing alone.
+	 * 
+	 * @param procedure to be found, compared by name
+	 * @return the position of the procedure, -1 if it isn't in the list
+	 */
+	public int indexOf(Procedure procedure){
+		
+		Procedure named = getProcedure(procedure.getProcedureName());
+		
+		if (named == null){
+			return -1;
+		}
+		
+		return named.equals(procedure) ? positions.get(named.getProcedureNo()) : procedures.indexOf(procedure);
+		
+	}
+	
+	/**
+	 * Finds the procedures whose id, or any word of whose name, starts with
+	 * the given text - so that "can" & "root c" both find "Root Canal". The
+	 * text is normalised as names are. The keys matching the text are found
+	 * by a binary search, so after that the search takes time in proportion
+	 * to the number of procedures found rather than to the size of the list.
+	 * 
+	 * @param query the text typed so far
+	 * @return the positions of the procedures found in order, every position if the text is blank
+	 */
+	public int[] search(String query){
+		
+		String prefix = normalise(query);
+		
+		if (prefix.isEmpty()){
+			
+			int[] positions = new int[procedures.size()];
+			
+			for (int i = 0 ; i < positions.length ; i++){
+				positions[i] = i;
+			}
+			
+			return positions;
+			
+		}
+		
+		SearchIndex index = getSearchIndex();
+		int first = index.lowerBound(prefix);
+		int last = first;
+		
+		while (last < index.keys.length && index.keys[last].startsWith(prefix)){
+			last++;
+		}
+		
+		// a procedure may be found by more than one of its keys, so the positions are sorted & each kept once
+		int[] found = Arrays.copyOfRange(index.positions, first, last);
+		Arrays.sort(found);
+		
+		int count = 0;
+		
+		for (int i = 0 ; i < found.length ; i++){
+			if (count == 0 || found[i] != found[count - 1]){
+				found[count++] = found[i];
+			}
+		}
+		
+		return Arrays.copyOf(found, count);
+		
+	}
+	
+	public boolean contains(Procedure procedure){
+		return indexOf(procedure) >= 0;
+	}
+	
+	public Procedure get(int index){
+		return procedures.get(index);
+	}
+	
+	public int size(){
+		return procedures.size();
+	}
+	
+	public boolean isEmpty(){
+		return procedures.isEmpty();
+	}
+	
+	@Override
+	public Iterator<Procedure> iterator() {
+		return procedures.iterator();
+	}
+	
 	
 	@Override
 	public String toString(){
 		String details = "";
 		
-		for (Procedure p : list){
+		for (Procedure p : procedures){
 			details += p + "\n";
 		}
 		
 		return details;
 	}
 	
+	/**
+	 * Returns the search index of the snapshot, building it the first time.
+	 * Two threads may both build it, but as the snapshot never changes they
+	 * build the same index, so whichever is kept doesn't matter.
+	 * 
+	 * @return the search index
+	 */
+	private SearchIndex getSearchIndex(){
+		
+		SearchIndex index = searchIndex;
+		
+		if (index == null){
+			index = new SearchIndex(procedures);
+			searchIndex = index;
+		}
+		
+		return index;
+		
+	}
+	
+	
+		
+	// GETTERS
+		
+	public long getVersion(){
+		return version;
+	}
+	
+	/**
+	 * Returns the procedures of the snapshot as a list, which can't be
+	 * changed.
+	 * 
+	 * @return the procedures, in order
+	 */
+	public List<Procedure> getProcedures(){
+		return procedures;
+	}
+	
+	
+	/**
+	 * The keys a snapshot is searched by, sorted so that the keys starting
+	 * with any text are found together by a binary search. Each procedure has
+	 * a key for its id, & one for its normalised name from the start of each
+	 * word on.
+	 * 
+	 * @author Alan Sheehan - R00111909
+	 */
+	private static class SearchIndex {
+		
+		private final String[] keys;
+		private final int[] positions;
+		
+		
+		/**
+		 * Builds the index of the given procedures.
+		 * 
+		 * @param procedures to be indexed, by their position in the list
+		 */
+		private SearchIndex(List<Procedure> procedures){
+			
+			ArrayList<Key> entries = new ArrayList<Key>(procedures.size() * 3);
+			
+			for (int i = 0 ; i < procedures.size() ; i++){
+				
+				String name = normalise(procedures.get(i).getProcedureName());
+				
+				entries.add(new Key(Integer.toString(procedures.get(i).getProcedureNo()), i));
+				entries.add(new Key(name, i));
+				
+				for (int space = name.indexOf(' ') ; space >= 0 ; space = name.indexOf(' ', space + 1)){
+					entries.add(new Key(name.substring(space + 1), i));
+				}
+				
+			}
+			
+			Key[] sorted = entries.toArray(new Key[entries.size()]);
+			Arrays.sort(sorted);
+			
+			keys = new String[sorted.length];
+			positions = new int[sorted.length];
+			
+			for (int i = 0 ; i < sorted.length ; i++){
+				keys[i] = sorted[i].key;
+				positions[i] = sorted[i].position;
+			}
+			
+		}
+		
+		/**
+		 * Finds where the keys starting with the given text begin.
+		 * 
+		 * @param prefix the normalised text
+		 * @return the index of the first key not less than the text
+		 */
+		private int lowerBound(String prefix){
+			
+			int low = 0;
+			int high = keys.length;
+			
+			while (low < high){
+				
+				int middle = (low + high) >>> 1;
+				
+				if (keys[middle].compareTo(prefix) < 0){
+					low = middle + 1;
+				}
+				else {
+					high = middle;
+				}
+				
+			}
+			
+			return low;
+			
+		}
+		
+	}
+	
+	
+	/**
+	 * A key of the search index & the position of the procedure it belongs to.
+	 * 
+	 * @author Alan Sheehan - R00111909
+	 */
+	private static class Key implements Comparable<Key> {
+		
+		private final String key;
+		private final int position;
+		
+		private Key(String key, int position){
+			this.key = key;
+			this.position = position;
+		}
+		
+		@Override
+		public int compareTo(Key other){
+			return key.compareTo(other.key);
+		}
+		
+	}
+	
+	
+	/**
+	 * Allows an object to be told whenever the procedures change.
+	 * 
+	 * @author Alan Sheehan - R00111909
+	 */
+	public interface Listener {
+		
+		/**
+		 * Called on the event dispatch thread with each new version of the
+		 * procedures.
+		 * 
+		 * @param procedures the latest snapshot
+		 */
+		void procedureListChanged(ProcedureList procedures);
+		
+	}
+	
 }
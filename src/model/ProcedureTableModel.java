@@ -12,7 +12,7 @@ public class ProcedureTableModel extends CustomAbstractTableModel <Procedure> {
 	private static final long serialVersionUID = 2051503359049560500L;
 	
 	private String[] headers = {"#", "Name", "Price"};
-	private ArrayList<Procedure> procedureList;
+	private ArrayList<Procedure> procedureList = new ArrayList<Procedure>();
 	
 	
 	/**
@@ -46,7 +46,7 @@ public class ProcedureTableModel extends CustomAbstractTableModel <Procedure> {
 			return Integer.class;
 		}
 		else if (column == 2){
-			return Double.class;
+			return Long.class;
 		}
 		else {
 			return String.class;
@@ -90,7 +90,7 @@ public class ProcedureTableModel extends CustomAbstractTableModel <Procedure> {
 	@Override
 	public void add(Procedure value) {
 		procedureList.add(value);
-		fireTableDataChanged();
+		fireTableRowsInserted(procedureList.size() - 1, procedureList.size() - 1);
 	}
 	
 	@Override
@@ -101,7 +101,7 @@ public class ProcedureTableModel extends CustomAbstractTableModel <Procedure> {
 	@Override
 	public void set(int row, Procedure procedure){
 		procedureList.set(row, procedure);
-		fireTableDataChanged();
+		fireTableRowsUpdated(row, row);
 	}
 	
 	@Override
@@ -112,19 +112,29 @@ public class ProcedureTableModel extends CustomAbstractTableModel <Procedure> {
 	@Override
 	public void remove(int index) {
 		procedureList.remove(index);
-		fireTableDataChanged();
+		fireTableRowsDeleted(index, index);
 	}
 
 	@Override
 	public void clear() {
-		procedureList.clear();
-		fireTableDataChanged();
+		
+		int rows = procedureList.size();
+		
+		if (rows > 0){
+			procedureList.clear();
+			fireTableRowsDeleted(0, rows - 1);
+		}
+		
 	}
 
 	@Override
 	public void setData(ArrayList<Procedure> data) {
-		procedureList = data;
-		fireTableDataChanged();
+		replaceRows(procedureList, data);
+	}
+	
+	@Override
+	protected int getID(Procedure value) {
+		return value.getProcedureNo();
 	}
 	
 
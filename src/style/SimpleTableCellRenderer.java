@@ -3,7 +3,6 @@ package style;
 import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Component;
-import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 
@@ -14,6 +13,8 @@ import javax.swing.JTable;
 import javax.swing.SwingConstants;
 import javax.swing.table.DefaultTableCellRenderer;
 
+import model.Money;
+
 /**
  * An implementation of DefaultTableCellRenderer.
  * 
@@ -28,8 +29,6 @@ public class SimpleTableCellRenderer extends DefaultTableCellRenderer {
 	private static final Color SELECTED_CELL_COLOR = new Color(0/255f, 132/255f, 227/255f, .8f);
 	private static final Color ODD_CELL_COLOR = new Color(215, 215, 215);
 	private static final Color EVEN_CELL_COLOR = new Color(245, 245, 245);
-	
-	private DecimalFormat euro = new DecimalFormat("###,###.00");
 
 	
 	@Override
@@ -80,10 +79,10 @@ public class SimpleTableCellRenderer extends DefaultTableCellRenderer {
 			return cell;
 			
 		}
-		// rendering for doubles
-		else if (value instanceof Double){
+		// rendering for amounts of money, in cents
+		else if (value instanceof Long){
 			
-			cell.setText(euro.format((Double) value));
+			cell.setText(Money.format((Long) value));
 			
 			return cell;
 			
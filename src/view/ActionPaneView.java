@@ -8,14 +8,17 @@ import java.awt.FlowLayout;
 import javax.swing.BorderFactory;
 import javax.swing.ImageIcon;
 import javax.swing.JButton;
+import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.JTextField;
 import javax.swing.border.Border;
 
 import res.ImageResources;
 
 /**
  * The action pane holds most of the functionality of the program. Buttons for adding, editing
- * & removing patients, procedures & payments are contained within this panel.
+ * & removing patients, procedures & payments are contained within this panel, along
+ * with the box for searching patients.
  * 
  * @author Alan Sheehan - R00111909
  */
@@ -28,7 +31,9 @@ public class ActionPaneView extends JPanel {
 	private JButton addProcedureButton, editProcedureButton, removeProcedureButton;
 	private JButton addPaymentButton, editPaymentButton, removePaymentButton;
 	
-	private JPanel patientPanel, procedurePanel, paymentPanel, procedurePaymentContainer;
+	private JTextField searchField;
+	
+	private JPanel patientPanel, searchPanel, procedurePanel, paymentPanel, procedurePaymentContainer;
 	
 	private CardLayout cardContainerLayout;
 	
@@ -95,10 +100,18 @@ public class ActionPaneView extends JPanel {
 		removePaymentButton.setIcon(new ImageIcon(ImageResources.PAYMENT_REMOVE_ICON));
 		
 		
+		// creating the patient search box
+		searchField = new JTextField(20);
+		searchField.setToolTipText("Search patients by name, address or phone number");
+		
+		
 		// creating containers
 		patientPanel = new JPanel(new FlowLayout());
 		patientPanel.setBorder(containerSpacing);
 		
+		searchPanel = new JPanel(new FlowLayout());
+		searchPanel.setBorder(containerSpacing);
+		
 		procedurePanel = new JPanel(new FlowLayout());
 		
 		paymentPanel = new JPanel(new FlowLayout());
@@ -109,6 +122,9 @@ public class ActionPaneView extends JPanel {
 		patientPanel.add(editPatientButton);
 		patientPanel.add(removePatientButton);
 		
+		searchPanel.add(new JLabel("Search:"));
+		searchPanel.add(searchField);
+		
 		procedurePanel.add(addProcedureButton);
 		procedurePanel.add(editProcedureButton);
 		procedurePanel.add(removeProcedureButton);
@@ -133,6 +149,7 @@ public class ActionPaneView extends JPanel {
 		setLayout(new BorderLayout());
 		
 		add(patientPanel, BorderLayout.WEST);
+		add(searchPanel, BorderLayout.CENTER);
 		add(procedurePaymentContainer, BorderLayout.EAST);
 
 	}
@@ -186,6 +203,12 @@ public class ActionPaneView extends JPanel {
 	}
 
 	
+	// SEARCH
+	public JTextField getSearchField() {
+		return searchField;
+	}
+	
+	
 	// CARD-CONTAINER
 	public CardLayout getCardContainerLayout(){
 		return cardContainerLayout;
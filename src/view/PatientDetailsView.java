@@ -45,7 +45,6 @@ public class PatientDetailsView extends JSplitPane {
 		// creating and setting up tables
 		patientTable = new JTable();
 		patientTable.setFillsViewportHeight(true);
-		patientTable.setAutoCreateRowSorter(true);
 		patientTable.getTableHeader().setReorderingAllowed(false);
 		patientTable.getSelectionModel().setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
 		patientTable.setShowGrid(false);
@@ -53,6 +52,7 @@ public class PatientDetailsView extends JSplitPane {
 		
 		patientTable.setDefaultRenderer(Object.class, renderer);
 		patientTable.setDefaultRenderer(Integer.class, renderer);
+		patientTable.setDefaultRenderer(Long.class, renderer);
 		
 		
 		procedureTable = new JTable();
@@ -64,7 +64,7 @@ public class PatientDetailsView extends JSplitPane {
 		procedureTable.setIntercellSpacing(new Dimension(0, 0));
 		
 		procedureTable.setDefaultRenderer(Object.class, renderer);
-		procedureTable.setDefaultRenderer(Double.class, renderer);
+		procedureTable.setDefaultRenderer(Long.class, renderer);
 		procedureTable.setDefaultRenderer(Integer.class, renderer);
 		
 		
@@ -8,6 +8,7 @@ import javax.swing.JFrame;
 import javax.swing.JMenuItem;
 import javax.swing.JPanel;
 import javax.swing.JTable;
+import javax.swing.JTextField;
 import javax.swing.UIManager;
 import javax.swing.border.Border;
 import javax.swing.event.ChangeEvent;
@@ -108,6 +109,10 @@ public class RootView extends JFrame {
 		return actionPane.getProcedurePaymentContainer();
 	}
 	
+	public JTextField getPatientSearchField(){
+		return actionPane.getSearchField();
+	}
+	
 	
 	// ======================== GETTERS FOR MENU ITEMS ========================
 	public JMenuItem getSaveMenuItem (){